@@ -0,0 +1,148 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.cache.ExternalDataCache;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.RepositoryException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the shared {@link ExternalDataCache} in front of an {@link InMemoryDataSource}, with and without the
+ * cache: deep tree traversal, wide children listing item by item and in batch, and reads after invalidation.
+ * <p>
+ * Only the data cache layer is measured, through a {@link DataSourceReader} doing the same cache lookups as the external
+ * session. The scenarios going through the sessions and nodes, which need the Jahia JCR runtime, are run inside Jahia by
+ * the <code>ExternalProviderBenchmark</code> of the test module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataCacheBenchmark {
+
+    private static final String WIDE_FOLDER = "/";
+
+    @Param({"4"})
+    private int depth;
+
+    @Param({"6"})
+    private int width;
+
+    @Param({"5000"})
+    private int wideFolderSize;
+
+    @Param({"false", "true"})
+    private boolean dataCache;
+
+    private DataSourceReader treeReader;
+    private DataSourceReader wideFolderReader;
+    private List<String> wideFolderFiles;
+
+    @Setup(Level.Trial)
+    public void setup() throws RepositoryException {
+        InMemoryDataSource tree = new InMemoryDataSource(depth, width);
+        InMemoryDataSource wideFolder = new InMemoryDataSource(1, wideFolderSize);
+        ExternalProviderMetrics metrics = new ExternalProviderMetrics();
+        treeReader = new DataSourceReader(tree, newDataCache(), metrics);
+        wideFolderReader = new DataSourceReader(wideFolder, newDataCache(), metrics);
+        wideFolderFiles = new ArrayList<>();
+        for (String name : wideFolder.getChildren(WIDE_FOLDER)) {
+            if (name.startsWith("file")) {
+                wideFolderFiles.add(InMemoryDataSource.getChildPath(WIDE_FOLDER, name));
+            }
+        }
+    }
+
+    private ExternalDataCache newDataCache() {
+        return dataCache ? new ExternalDataCache(100000, 0) : null;
+    }
+
+    @Benchmark
+    public void deepTreeTraversal(Blackhole blackhole) throws RepositoryException {
+        traverse("/", blackhole);
+    }
+
+    private void traverse(String path, Blackhole blackhole) throws RepositoryException {
+        for (String name : treeReader.getChildren(path)) {
+            ExternalData child = treeReader.getItemByPath(InMemoryDataSource.getChildPath(path, name));
+            blackhole.consume(child);
+            if (InMemoryDataSource.FOLDER_TYPE.equals(child.getType())) {
+                traverse(child.getPath(), blackhole);
+            }
+        }
+    }
+
+    @Benchmark
+    public void wideChildListing(Blackhole blackhole) throws RepositoryException {
+        for (String name : wideFolderReader.getChildren(WIDE_FOLDER)) {
+            blackhole.consume(wideFolderReader.getItemByPath(InMemoryDataSource.getChildPath(WIDE_FOLDER, name)));
+        }
+    }
+
+    @Benchmark
+    public void wideChildListingInBatch(Blackhole blackhole) throws RepositoryException {
+        for (ExternalData child : wideFolderReader.getChildrenNodes(WIDE_FOLDER)) {
+            blackhole.consume(child);
+        }
+    }
+
+    /**
+     * Invalidates each file of the wide folder and reads it again, as done by the session after saving an item.
+     */
+    @Benchmark
+    public void readAfterInvalidation(Blackhole blackhole) throws RepositoryException {
+        for (String path : wideFolderFiles) {
+            wideFolderReader.invalidate(path, false);
+            blackhole.consume(wideFolderReader.getItemByPath(path));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.cache.ExternalDataCache;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
+
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.List;
+
+/**
+ * Reads the data source through the shared data cache when it is enabled, with the same cache lookups, generation checks
+ * and metrics as the external session, but without the session itself.
+ */
+class DataSourceReader {
+
+    private static final String WORKSPACE = "default";
+
+    private final ExternalDataSource dataSource;
+    private final ExternalDataCache dataCache;
+    private final ExternalProviderMetrics metrics;
+
+    DataSourceReader(ExternalDataSource dataSource, ExternalDataCache dataCache, ExternalProviderMetrics metrics) {
+        this.dataSource = dataSource;
+        this.dataCache = dataCache;
+        this.metrics = metrics;
+    }
+
+    ExternalData getItemByPath(String path) throws PathNotFoundException {
+        ExternalData data = dataCache != null ? dataCache.getItemByPath(WORKSPACE, path) : null;
+        if (data == null) {
+            long start = System.nanoTime();
+            data = dataSource.getItemByPath(path);
+            metrics.record(ExternalProviderMetrics.GET_ITEM_BY_PATH, start);
+            if (dataCache != null) {
+                dataCache.putItem(WORKSPACE, data, dataCache.getGeneration());
+            }
+        }
+        return data;
+    }
+
+    List<String> getChildren(String path) throws RepositoryException {
+        List<String> children = dataCache != null ? dataCache.getChildren(WORKSPACE, path) : null;
+        if (children == null) {
+            long start = System.nanoTime();
+            children = dataSource.getChildren(path);
+            metrics.record(ExternalProviderMetrics.GET_CHILDREN, start);
+            if (dataCache != null) {
+                dataCache.putChildren(WORKSPACE, path, children, dataCache.getGeneration());
+            }
+        }
+        return children;
+    }
+
+    List<ExternalData> getChildrenNodes(String path) throws RepositoryException {
+        List<ExternalData> children = dataCache != null ? dataCache.getChildrenNodes(WORKSPACE, path) : null;
+        if (children == null) {
+            long start = System.nanoTime();
+            children = ((ExternalDataSource.CanLoadChildrenInBatch) dataSource).getChildrenNodes(path);
+            metrics.record(ExternalProviderMetrics.GET_CHILDREN_NODES, start);
+            if (dataCache != null) {
+                dataCache.putChildrenNodes(WORKSPACE, path, children, dataCache.getGeneration());
+            }
+        }
+        return children;
+    }
+
+    void invalidate(String path, boolean includeDescendants) {
+        if (dataCache != null) {
+            dataCache.invalidate(path, includeDescendants);
+        }
+    }
+}
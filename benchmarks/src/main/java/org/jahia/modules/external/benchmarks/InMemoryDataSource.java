@@ -0,0 +1,170 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.apache.commons.lang.StringUtils;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only, in-memory {@link ExternalDataSource} used as a stand-in for a real backend in the benchmarks. It holds a
+ * tree of folders and files.
+ */
+public class InMemoryDataSource implements ExternalDataSource, ExternalDataSource.CanLoadChildrenInBatch {
+
+    static final String FOLDER_TYPE = "jnt:contentFolder";
+    static final String FILE_TYPE = "jnt:content";
+
+    private final Map<String, ExternalData> itemsByPath = new ConcurrentHashMap<>();
+    private final Map<String, ExternalData> itemsById = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> children = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a data source with a tree of the specified depth, where each folder has <code>width</code> sub folders
+     * and <code>width</code> files.
+     *
+     * @param depth the number of folder levels under the root
+     * @param width the number of sub folders and of files in each folder
+     */
+    public InMemoryDataSource(int depth, int width) {
+        addItem(new ExternalData("/", "/", FOLDER_TYPE, new HashMap<String, String[]>()));
+        addTree("/", depth, width);
+    }
+
+    private void addTree(String path, int depth, int width) {
+        if (depth == 0) {
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            String folderPath = getChildPath(path, "folder" + i);
+            addItem(newItem(folderPath, FOLDER_TYPE));
+            addTree(folderPath, depth - 1, width);
+        }
+        for (int i = 0; i < width; i++) {
+            addItem(newItem(getChildPath(path, "file" + i), FILE_TYPE));
+        }
+    }
+
+    private static ExternalData newItem(String path, String type) {
+        Map<String, String[]> properties = new HashMap<>();
+        properties.put("jcr:title", new String[]{StringUtils.substringAfterLast(path, "/")});
+        return new ExternalData(path, path, type, properties);
+    }
+
+    private void addItem(ExternalData data) {
+        itemsByPath.put(data.getPath(), data);
+        itemsById.put(data.getId(), data);
+        if (!data.getPath().equals("/")) {
+            children.computeIfAbsent(getParentPath(data.getPath()), p -> new ArrayList<String>()).add(data.getName());
+        }
+    }
+
+    @Override
+    public List<String> getChildren(String path) throws RepositoryException {
+        List<String> names = children.get(path);
+        return names != null ? new ArrayList<>(names) : Collections.<String>emptyList();
+    }
+
+    @Override
+    public List<ExternalData> getChildrenNodes(String path) throws RepositoryException {
+        List<ExternalData> nodes = new ArrayList<>();
+        for (String name : getChildren(path)) {
+            nodes.add(itemsByPath.get(getChildPath(path, name)));
+        }
+        return nodes;
+    }
+
+    @Override
+    public ExternalData getItemByIdentifier(String identifier) throws ItemNotFoundException {
+        ExternalData data = itemsById.get(identifier);
+        if (data == null) {
+            throw new ItemNotFoundException(identifier);
+        }
+        return data;
+    }
+
+    @Override
+    public ExternalData getItemByPath(String path) throws PathNotFoundException {
+        ExternalData data = itemsByPath.get(path);
+        if (data == null) {
+            throw new PathNotFoundException(path);
+        }
+        return data;
+    }
+
+    @Override
+    public Set<String> getSupportedNodeTypes() {
+        return new HashSet<>(Arrays.asList(FOLDER_TYPE, FILE_TYPE));
+    }
+
+    @Override
+    public boolean isSupportsHierarchicalIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public boolean isSupportsUuid() {
+        return false;
+    }
+
+    @Override
+    public boolean itemExists(String path) {
+        return itemsByPath.containsKey(path);
+    }
+
+    static String getChildPath(String path, String childName) {
+        return path.endsWith("/") ? path + childName : path + "/" + childName;
+    }
+
+    static String getParentPath(String path) {
+        String parentPath = StringUtils.substringBeforeLast(path, "/");
+        return parentPath.isEmpty() ? "/" : parentPath;
+    }
+}
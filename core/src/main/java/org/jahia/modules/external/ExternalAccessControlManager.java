@@ -53,6 +53,8 @@ import org.apache.jackrabbit.core.security.JahiaPrivilegeRegistry;
 import org.jahia.api.Constants;
 import org.jahia.exceptions.JahiaRuntimeException;
 import org.jahia.jaas.JahiaPrincipal;
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.jahia.services.content.JCRNodeWrapper;
 import org.jahia.services.content.JCRSessionFactory;
 import org.jahia.services.usermanager.JahiaUserManagerService;
@@ -166,17 +168,25 @@ public class ExternalAccessControlManager implements AccessControlManager {
     public boolean hasPrivileges(final String absPath, final Privilege[] privileges)
             throws PathNotFoundException, RepositoryException {
 
+        return hasPrivileges(absPath, privileges, getPrivilegesNames(privileges), getSecuritySession());
+    }
+
+    private boolean hasPrivileges(String absPath, Privilege[] privileges, Set<String> privs, Session securitySession)
+            throws RepositoryException {
+
         // check ACLs
-        Set<String> privs = new HashSet<>();
-        for (Privilege privilege : privileges) {
-            privs.add(privilege.getName());
-        }
         String mountPoint = session.getRepository().getStoreProvider().getMountPoint();
-        Session securitySession = (session.getUserID().startsWith(SYSTEM_USER)) ? session
-                : JCRSessionFactory.getInstance().getCurrentSystemSession(session.getWorkspace().getName(), null, null);
         PathWrapper pathWrapper = new ExternalPathWrapperImpl(StringUtils.equals(absPath, "/") ? mountPoint : mountPoint + absPath, securitySession);
-        boolean isGranted = AccessManagerUtils.isGranted(pathWrapper, privs, securitySession,
-                jahiaPrincipal, workspaceName, false, pathPermissionCache, compiledAcls, registry);
+        ExternalAclCache aclCache = session.getRepository().getAclCache();
+        boolean isGranted;
+        if (aclCache != null) {
+            isGranted = AccessManagerUtils.isGranted(pathWrapper, privs, securitySession, jahiaPrincipal, workspaceName, false,
+                    aclCache.getPathPermissions(workspaceName, session.getUserID(), session.getRealm()),
+                    aclCache.getCompiledAcls(workspaceName, session.getUserID(), session.getRealm()), registry);
+        } else {
+            isGranted = AccessManagerUtils.isGranted(pathWrapper, privs, securitySession,
+                    jahiaPrincipal, workspaceName, false, pathPermissionCache, compiledAcls, registry);
+        }
 
         if (supportPrivileges) {
             // if the node is created in the same session, return true
@@ -206,12 +216,36 @@ public class ExternalAccessControlManager implements AccessControlManager {
     }
 
     private String[] getPrivilegesNamesLegacy(String absPath) {
+        ExternalAclCache aclCache = session.getRepository().getAclCache();
+        String[] names = aclCache != null ? aclCache.getPrivilegesNames(workspaceName, session.getUserID(), session.getRealm(), absPath) : null;
+        if (names != null) {
+            return names;
+        }
         ExternalContentStoreProvider.setCurrentSession(session);
+        long start = System.nanoTime();
         try {
-            return ((ExternalDataSource.SupportPrivileges) dataSource).getPrivilegesNames(session.getUserID(), absPath);
+            names = ((ExternalDataSource.SupportPrivileges) dataSource).getPrivilegesNames(session.getUserID(), absPath);
         } finally {
+            session.getMetrics().record(ExternalProviderMetrics.GET_PRIVILEGES_NAMES, start);
             ExternalContentStoreProvider.removeCurrentSession();
         }
+        if (aclCache != null) {
+            aclCache.putPrivilegesNames(workspaceName, session.getUserID(), session.getRealm(), absPath, names);
+        }
+        return names;
+    }
+
+    private Session getSecuritySession() throws RepositoryException {
+        return (session.getUserID().startsWith(SYSTEM_USER)) ? session
+                : JCRSessionFactory.getInstance().getCurrentSystemSession(session.getWorkspace().getName(), null, null);
+    }
+
+    private static Set<String> getPrivilegesNames(Privilege[] privileges) {
+        Set<String> privs = new HashSet<>();
+        for (Privilege privilege : privileges) {
+            privs.add(privilege.getName());
+        }
+        return privs;
     }
 
     private boolean hasPrivilegesLegacy(String absPath, Privilege[] privileges)
@@ -274,6 +308,27 @@ public class ExternalAccessControlManager implements AccessControlManager {
         }
     }
 
+    /**
+     * Checks the read permission on several paths at once, e.g. for a page of children or of query results. The privilege
+     * and the security session are only resolved once for all the paths.
+     *
+     * @param paths the paths to check
+     * @return the readable paths, in the same order
+     * @throws RepositoryException in case of an error while checking the permissions
+     */
+    public List<String> checkRead(List<String> paths) throws RepositoryException {
+        Privilege[] privileges = new Privilege[]{registry.getPrivilege(JCR_READ + "_" + session.getWorkspace().getName(), null)};
+        Set<String> privs = getPrivilegesNames(privileges);
+        Session securitySession = getSecuritySession();
+        List<String> readablePaths = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            if (hasPrivileges(path, privileges, privs, securitySession)) {
+                readablePaths.add(path);
+            }
+        }
+        return readablePaths;
+    }
+
     // JCR_MODIFY_PROPERTIES
     public void checkModify(String path) throws RepositoryException {
         if (!hasPrivileges(path, new Privilege[]{registry.getPrivilege(JCR_MODIFY_PROPERTIES + "_" + session.getWorkspace().getName(), null)})) {
@@ -0,0 +1,89 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.services.content.DefaultEventListener;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRStoreProvider;
+
+/**
+ * Listener for the changes of ACLs and roles, in all workspaces, to invalidate the shared ACL caches of the external
+ * providers. ACLs set on external nodes are stored in the extension provider, and role definitions are used by all
+ * permission checks.
+ */
+public class ExternalAclListener extends DefaultEventListener {
+
+    private static final String[] NODE_TYPES = new String[] {"jnt:acl", "jnt:ace", "jnt:role", "jnt:member"};
+
+    @Override
+    public int getEventTypes() {
+        return Event.NODE_ADDED + Event.NODE_REMOVED + Event.NODE_MOVED + Event.PROPERTY_ADDED + Event.PROPERTY_CHANGED
+                + Event.PROPERTY_REMOVED;
+    }
+
+    @Override
+    public String[] getNodeTypes() {
+        return NODE_TYPES;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        if (!events.hasNext()) {
+            return;
+        }
+        for (JCRStoreProvider provider : JCRSessionFactory.getInstance().getProviderList()) {
+            if (provider instanceof ExternalContentStoreProvider) {
+                ExternalAclCache aclCache = ((ExternalContentStoreProvider) provider).getAclCache();
+                if (aclCache != null) {
+                    aclCache.invalidate();
+                }
+            }
+        }
+    }
+
+}
@@ -43,16 +43,23 @@
  */
 package org.jahia.modules.external;
 
-import org.apache.tika.io.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 import javax.jcr.Binary;
 import javax.jcr.RepositoryException;
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
 * Implementation of the {@link javax.jcr.Binary} for the {@link org.jahia.modules.external.ExternalData}.
+* <p>
+* A {@link ByteArrayInputStream} is used as is. Any other stream is read only when the content is first needed, and
+* copied in memory if it is small or to a temporary file otherwise, so that the size is known and the content can be read
+* several times and at any position without keeping it in the heap. The temporary file is deleted by {@link #dispose()}.
 * User: loom
 * Date: Aug 12, 2010
 * Time: 3:21:58 PM
@@ -60,36 +67,126 @@ import java.io.InputStream;
 */
 public class ExternalBinaryImpl implements Binary {
 
+    private static final int MEMORY_THRESHOLD = 64 * 1024;
+
     private InputStream inputStream = null;
 
+    private byte[] content;
+
+    private File spoolFile;
+
+    private long size = -1;
+
     public ExternalBinaryImpl(InputStream inputStream) {
-        if (!inputStream.markSupported()) {
-            inputStream = new BufferedInputStream(inputStream);
+        if (inputStream instanceof ByteArrayInputStream) {
+            // already in memory, its size is known and it can be reset at any time
+            size = ((ByteArrayInputStream) inputStream).available();
+            inputStream.mark(0);
         }
         this.inputStream = inputStream;
     }
 
-    public InputStream getStream() throws RepositoryException {
+    /**
+     * @param inputStream the content
+     * @param size        the size of the content, in bytes
+     */
+    public ExternalBinaryImpl(InputStream inputStream, long size) {
+        this(inputStream);
+        this.size = size;
+    }
+
+    public synchronized InputStream getStream() throws RepositoryException {
         try {
-            inputStream.reset();
+            if (inputStream instanceof ByteArrayInputStream) {
+                inputStream.reset();
+                return inputStream;
+            }
+            spool();
+            return content != null ? new ByteArrayInputStream(content) : new FileInputStream(spoolFile);
         } catch (IOException e) {
             throw new RepositoryException(e);
         }
-        return inputStream;
     }
 
-    public int read(byte[] b, long position) throws IOException, RepositoryException {
-        if (inputStream == null) {
+    public synchronized int read(byte[] b, long position) throws IOException, RepositoryException {
+        if (inputStream == null && content == null && spoolFile == null) {
             throw new IOException("Empty stream");
         }
-        return inputStream.read(b, (int) position, b.length);
+        int read;
+        if (inputStream instanceof ByteArrayInputStream) {
+            inputStream.reset();
+            if (IOUtils.skip(inputStream, position) < position) {
+                return -1;
+            }
+            read = IOUtils.read(inputStream, b);
+        } else {
+            spool();
+            if (content != null) {
+                read = position < content.length ? (int) Math.min(b.length, content.length - position) : 0;
+                System.arraycopy(content, (int) Math.min(position, content.length), b, 0, read);
+            } else {
+                try (FileChannel channel = FileChannel.open(spoolFile.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(b);
+                    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                        // fill the buffer
+                    }
+                    read = buffer.position();
+                }
+            }
+        }
+        return read > 0 || b.length == 0 ? read : -1;
     }
 
-    public long getSize() throws RepositoryException {
-        return 0;
+    public synchronized long getSize() throws RepositoryException {
+        if (size < 0) {
+            try {
+                spool();
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
+        }
+        return size;
     }
 
-    public void dispose() {
+    public synchronized void dispose() {
         IOUtils.closeQuietly(inputStream);
+        content = null;
+        if (spoolFile != null) {
+            FileUtils.deleteQuietly(spoolFile);
+            spoolFile = null;
+        }
+    }
+
+    /**
+     * Reads the stream once, keeping its content in memory if it is small or in a temporary file otherwise.
+     */
+    private void spool() throws IOException {
+        if (content != null || spoolFile != null) {
+            return;
+        }
+        if (inputStream == null) {
+            throw new IOException("Binary disposed");
+        }
+        try {
+            byte[] buffer = new byte[MEMORY_THRESHOLD];
+            int read = IOUtils.read(inputStream, buffer);
+            if (read < MEMORY_THRESHOLD) {
+                content = Arrays.copyOf(buffer, read);
+                size = read;
+            } else {
+                File file = File.createTempFile("external-binary-", null);
+                try (OutputStream out = new FileOutputStream(file)) {
+                    out.write(buffer);
+                    size = read + IOUtils.copyLarge(inputStream, out);
+                } catch (IOException e) {
+                    FileUtils.deleteQuietly(file);
+                    throw e;
+                }
+                spoolFile = file;
+            }
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+            inputStream = null;
+        }
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes of a session save, passed at once to a {@link ExternalDataSource.CanSaveInBatch} data source. The changes are
+ * meant to be applied in this order : saved items (parents before their children), reordered children, then removed items
+ * (children before their parents).
+ */
+public class ExternalChangeSet {
+
+    private final List<ExternalData> savedItems;
+    private final Map<String, List<String>> orderedChildren;
+    private final List<String> removedPaths;
+
+    public ExternalChangeSet(List<ExternalData> savedItems, Map<String, List<String>> orderedChildren, List<String> removedPaths) {
+        this.savedItems = Collections.unmodifiableList(savedItems);
+        this.orderedChildren = Collections.unmodifiableMap(orderedChildren);
+        this.removedPaths = Collections.unmodifiableList(removedPaths);
+    }
+
+    /**
+     * @return the items to create or update, parents before their children
+     */
+    public List<ExternalData> getSavedItems() {
+        return savedItems;
+    }
+
+    /**
+     * @return the new order of the children names, by parent path
+     */
+    public Map<String, List<String>> getOrderedChildren() {
+        return orderedChildren;
+    }
+
+    /**
+     * @return the paths of the items to delete, children before their parents
+     */
+    public List<String> getRemovedPaths() {
+        return removedPaths;
+    }
+
+    public boolean isEmpty() {
+        return savedItems.isEmpty() && orderedChildren.isEmpty() && removedPaths.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalChangeSet{savedItems=" + savedItems.size() + ", orderedChildren=" + orderedChildren.keySet()
+                + ", removedPaths=" + removedPaths + '}';
+    }
+}
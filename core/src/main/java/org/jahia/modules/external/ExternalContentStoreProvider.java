@@ -48,6 +48,9 @@ import org.apache.jackrabbit.commons.iterator.PropertyIteratorAdapter;
 import org.jahia.api.Constants;
 import org.jahia.exceptions.JahiaInitializationException;
 import org.jahia.exceptions.JahiaRuntimeException;
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.cache.ExternalDataCache;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.jahia.services.content.*;
 import org.jahia.services.content.nodetypes.Name;
 import org.jahia.services.content.nodetypes.NodeTypeRegistry;
@@ -59,7 +62,10 @@ import javax.jcr.*;
 import javax.jcr.query.QueryManager;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of the {@link org.jahia.services.content.JCRStoreProvider} for the {@link org.jahia.modules.external.ExternalData}.
@@ -76,6 +82,8 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
 
     private ExternalDataSource dataSource;
 
+    private ExternalRepositoryImpl externalRepository;
+
     private String id;
 
     private ExternalProviderInitializerService externalProviderInitializerService;
@@ -93,6 +101,18 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
     private boolean cacheKeyOnReferenceSupport = false;
     private boolean aclSupport = true;
 
+    private boolean dataCacheEnabled = false;
+    private int dataCacheMaxEntries = 1000;
+    private long dataCacheTimeToLiveSeconds = 60;
+
+    private boolean aclCacheEnabled = false;
+    private int aclCacheMaxEntries = 10000;
+    private long aclCacheTimeToLiveSeconds = 60;
+
+    private int queryFetchSize = 100;
+
+    private final ExternalProviderMetrics metrics = new ExternalProviderMetrics(this::getDataCache, this::getAclCache);
+
     public static ExternalSessionImpl getCurrentSession() {
         return currentSession.get();
     }
@@ -122,6 +142,7 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
         }
         ExternalRepositoryImpl instance = new ExternalRepositoryImpl(this, dataSource, namespaceRegistry);
         instance.setProviderKey(getKey());
+        externalRepository = instance;
 
         return instance;
     }
@@ -154,6 +175,7 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
         }
 
         getId(); // initialize ID
+        ExternalProviderMetrics.register(getKey(), metrics);
         if (dataSource instanceof ExternalDataSource.Initializable) {
             ((ExternalDataSource.Initializable) dataSource).start();
         }
@@ -163,6 +185,18 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
     @Override
     public void stop() {
         super.stop();
+        ExternalDataCache dataCache = getDataCache();
+        if (dataCache != null) {
+            logger.info("Stopping provider {}, data cache statistics: {}", getKey(), dataCache);
+            dataCache.clear();
+        }
+        ExternalAclCache aclCache = getAclCache();
+        if (aclCache != null) {
+            logger.info("Stopping provider {}, ACL cache statistics: {}", getKey(), aclCache);
+            aclCache.clear();
+        }
+        logger.info("Stopping provider {}, metrics: {}", getKey(), metrics);
+        ExternalProviderMetrics.unregister(getKey());
         if (dataSource instanceof ExternalDataSource.Initializable) {
             ((ExternalDataSource.Initializable) dataSource).stop();
         }
@@ -283,6 +317,99 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
         this.slowConnection = slowConnection;
     }
 
+    public boolean isDataCacheEnabled() {
+        return dataCacheEnabled;
+    }
+
+    /**
+     * Enables the repository level cache of the data returned by the data source, shared by all sessions. Should only be
+     * enabled if the data source returns the same data whatever the current user is.
+     *
+     * @param dataCacheEnabled <code>true</code> to enable the shared data cache
+     */
+    public void setDataCacheEnabled(boolean dataCacheEnabled) {
+        this.dataCacheEnabled = dataCacheEnabled;
+    }
+
+    public int getDataCacheMaxEntries() {
+        return dataCacheMaxEntries;
+    }
+
+    public void setDataCacheMaxEntries(int dataCacheMaxEntries) {
+        this.dataCacheMaxEntries = dataCacheMaxEntries;
+    }
+
+    public long getDataCacheTimeToLiveSeconds() {
+        return dataCacheTimeToLiveSeconds;
+    }
+
+    public void setDataCacheTimeToLiveSeconds(long dataCacheTimeToLiveSeconds) {
+        this.dataCacheTimeToLiveSeconds = dataCacheTimeToLiveSeconds;
+    }
+
+    public boolean isAclCacheEnabled() {
+        return aclCacheEnabled;
+    }
+
+    /**
+     * Enables the repository level cache of the permission checks, shared by all the sessions of the same user. The cache
+     * is invalidated when an ACL changes, but permissions depending on other data (e.g. group memberships) may be
+     * outdated until the entries expire.
+     *
+     * @param aclCacheEnabled <code>true</code> to enable the shared ACL cache
+     */
+    public void setAclCacheEnabled(boolean aclCacheEnabled) {
+        this.aclCacheEnabled = aclCacheEnabled;
+    }
+
+    public int getAclCacheMaxEntries() {
+        return aclCacheMaxEntries;
+    }
+
+    public void setAclCacheMaxEntries(int aclCacheMaxEntries) {
+        this.aclCacheMaxEntries = aclCacheMaxEntries;
+    }
+
+    public long getAclCacheTimeToLiveSeconds() {
+        return aclCacheTimeToLiveSeconds;
+    }
+
+    public void setAclCacheTimeToLiveSeconds(long aclCacheTimeToLiveSeconds) {
+        this.aclCacheTimeToLiveSeconds = aclCacheTimeToLiveSeconds;
+    }
+
+    /**
+     * @return the number of query results read and loaded at once when iterating over a query result
+     */
+    public int getQueryFetchSize() {
+        return queryFetchSize;
+    }
+
+    public void setQueryFetchSize(int queryFetchSize) {
+        this.queryFetchSize = queryFetchSize;
+    }
+
+    /**
+     * @return the shared data cache of this provider or <code>null</code> if it is not enabled or the repository is not created yet
+     */
+    public ExternalDataCache getDataCache() {
+        return externalRepository != null ? externalRepository.getDataCache() : null;
+    }
+
+    /**
+     * @return the shared ACL cache of this provider or <code>null</code> if it is not enabled or the repository is not created yet
+     */
+    public ExternalAclCache getAclCache() {
+        return externalRepository != null ? externalRepository.getAclCache() : null;
+    }
+
+    /**
+     * @return the counters and timings of the data source calls and other hot paths of this provider
+     */
+    public ExternalProviderMetrics getMetrics() {
+        return metrics;
+    }
+
     public List<String> getReservedNodes() {
         return reservedNodes;
     }
@@ -327,12 +454,21 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
      *             in case an internal identifier cannot be stored into the database
      */
     public String getOrCreateInternalIdentifier(String externalId) throws RepositoryException {
-        String internalId = getInternalIdentifier(externalId);
-        if (internalId == null) {
-            // not mapped yet -> store mapping
-            internalId = mapInternalIdentifier(externalId);
-        }
-        return internalId;
+        return getOrCreateInternalIdentifiers(Collections.singleton(externalId)).get(externalId);
+    }
+
+    /**
+     * Get internal UUIDs of the specified nodes, generating the ones which do not exist yet. The missing mappings are read and
+     * stored in a single database transaction.
+     *
+     * @param externalIds
+     *            the external IDs to get UUIDs for
+     * @return a map of the internal UUIDs by external ID
+     * @throws RepositoryException
+     *             in case the internal identifiers cannot be read or stored into the database
+     */
+    public Map<String, String> getOrCreateInternalIdentifiers(Collection<String> externalIds) throws RepositoryException {
+        return getExternalProviderInitializerService().getOrCreateInternalIdentifiers(externalIds, getKey(), getId());
     }
 
     public PropertyIterator getWeakReferences(JCRNodeWrapper node, String propertyName, Session session) throws RepositoryException {
@@ -343,9 +479,11 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
             }
             setCurrentSession((ExternalSessionImpl) session);
             List<String> referringProperties = null;
+            long start = System.nanoTime();
             try {
                 referringProperties = ((ExternalDataSource.Referenceable) dataSource).getReferringProperties(identifier, propertyName);
             } finally {
+                metrics.record(ExternalProviderMetrics.GET_REFERRING_PROPERTIES, start);
                 ExternalContentStoreProvider.removeCurrentSession();
             }
             if (referringProperties == null) {
@@ -43,7 +43,9 @@
  */
 package org.jahia.modules.external;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.jcr.Binary;
 import javax.jcr.ItemNotFoundException;
@@ -109,6 +111,23 @@ public interface ExternalDataSource {
         List<String> search(ExternalQuery query) throws RepositoryException;
     }
 
+    /**
+     * If implemented, search results are read through a cursor, by pages, instead of being returned as a complete list.
+     * The {@link Searchable#search(ExternalQuery)} method is still used by the administration pages.
+     */
+    public interface SearchableWithCursor extends Searchable {
+        /**
+         * Execute a search query, returning the results through a cursor
+         *
+         * @param query     The JCR Query, can be parsed with
+         * @param fetchSize Hint on the number of results which are read at once from the cursor
+         * @return Cursor over the results
+         * @throws RepositoryException
+         * @see org.jahia.modules.external.query.QueryHelper
+         */
+        ExternalSearchCursor search(ExternalQuery query, int fetchSize) throws RepositoryException;
+    }
+
     /**
      * If implemented, this interface allow and defines count feature support.
      */
@@ -164,6 +183,22 @@ public interface ExternalDataSource {
         void saveItem(ExternalData data) throws RepositoryException;
     }
 
+    /**
+     * If implemented, all the changes of a session save are passed at once to the data source, so that they can be written
+     * in a single transaction. Otherwise the {@link Writable} methods are called for each item. Moves are not part of the
+     * changes, as they are applied by {@link Writable#move(String, String)} when the session moves the node.
+     */
+    public interface CanSaveInBatch extends Writable {
+        /**
+         * Saves, reorders and deletes the items of the change set, preferably in a single transaction. If an exception is
+         * thrown, the session keeps its pending changes.
+         *
+         * @param changes the changes to write
+         * @throws RepositoryException
+         */
+        void saveChanges(ExternalChangeSet changes) throws RepositoryException;
+    }
+
     /**
      * Implemented by a service that needs initialization/finalization logic during service life cycle.
      */
@@ -231,6 +266,45 @@ public interface ExternalDataSource {
         List<ExternalData> getChildrenNodes(String path) throws RepositoryException;
     }
 
+    /**
+     * If implemented, allows for batch access to lazy properties. When a lazy property is read on a node, it is loaded for
+     * all the nodes that were loaded together with it (same children list or same query result page). When the properties
+     * of a node are iterated, all its lazy properties are loaded at once.
+     * Values which are not returned are read afterwards with the {@link LazyProperty} methods.
+     */
+    interface CanLoadLazyPropertiesInBatch extends LazyProperty {
+        /**
+         * Get values for lazy properties of several nodes
+         *
+         * @param paths         Paths of the nodes
+         * @param propertyNames Names of the properties to get
+         * @return values by property name, by node path
+         * @throws RepositoryException
+         */
+        Map<String, Map<String, String[]>> getPropertiesValues(Collection<String> paths, Collection<String> propertyNames) throws RepositoryException;
+
+        /**
+         * Get values for lazy internationalized properties of several nodes
+         *
+         * @param paths         Paths of the nodes
+         * @param lang          Language of the values
+         * @param propertyNames Names of the properties to get
+         * @return values by property name, by node path
+         * @throws RepositoryException
+         */
+        Map<String, Map<String, String[]>> getI18nPropertiesValues(Collection<String> paths, String lang, Collection<String> propertyNames) throws RepositoryException;
+
+        /**
+         * Get values for lazy binary properties of several nodes
+         *
+         * @param paths         Paths of the nodes
+         * @param propertyNames Names of the properties to get
+         * @return values by property name, by node path
+         * @throws RepositoryException
+         */
+        Map<String, Map<String, Binary[]>> getBinaryPropertiesValues(Collection<String> paths, Collection<String> propertyNames) throws RepositoryException;
+    }
+
     /**
      * If implemented, allows to check availability of the provider when the "/" node is read
      */
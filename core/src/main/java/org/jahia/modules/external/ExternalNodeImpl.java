@@ -77,11 +77,13 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
 
     private static final Logger logger = LoggerFactory.getLogger(ExternalNodeImpl.class);
     private static final String J_TRANSLATION = "j:translation_";
+    private static final int PRELOAD_SIZE = 100;
 
     private ExternalData data;
     private List<String> externalChildren;
     private Map<String, ExternalPropertyImpl> properties = null;
     private String uuid;
+    private List<ExternalNodeImpl> group;
 
     public ExternalNodeImpl(ExternalData data, ExternalSessionImpl session) throws RepositoryException {
 
@@ -207,6 +209,17 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         return data;
     }
 
+    /**
+     * Marks the specified nodes as loaded together : reading a lazy property on one of them will load it for all of them.
+     */
+    static void group(List<ExternalNodeImpl> nodes) {
+        if (nodes.size() > 1) {
+            for (ExternalNodeImpl node : nodes) {
+                node.group = nodes;
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -249,24 +262,29 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
                 try {
                     final ExternalDataSource dataSource = session.getRepository().getDataSource();
                     if (dataSource instanceof ExternalDataSource.CanLoadChildrenInBatch) {
-                        ExternalDataSource.CanLoadChildrenInBatch childrenLoader = (ExternalDataSource.CanLoadChildrenInBatch) dataSource;
-                        final List<ExternalData> childrenNodes = childrenLoader.getChildrenNodes(getPath());
+                        final List<ExternalData> childrenNodes = session.getChildrenData(getPath());
                         if (externalChildren == null) {
                             externalChildren = new ArrayList<String>(childrenNodes.size());
                         }
+                        session.prefetchInternalIdentifiers(childrenNodes);
+                        List<ExternalNodeImpl> children = new ArrayList<ExternalNodeImpl>(childrenNodes.size());
                         for (ExternalData child : childrenNodes) {
                             String parentPath = StringUtils.substringBeforeLast(child.getPath(), "/");
                             if (parentPath.equals("")) {
                                 parentPath = "/";
                             }
+                            final ExternalNodeImpl node = new ExternalNodeImpl(child, session);
                             if (parentPath.equals(getPath())) {
                                 externalChildren.add(child.getName());
+                                children.add(node);
                             }
-                            final ExternalNodeImpl node = new ExternalNodeImpl(child, session);
                             session.registerNode(node);
                         }
+                        if (dataSource instanceof ExternalDataSource.CanLoadLazyPropertiesInBatch) {
+                            group(children);
+                        }
                     } else {
-                        externalChildren = new ArrayList<String>(dataSource.getChildren(getPath()));
+                        externalChildren = new ArrayList<String>(session.getChildrenNames(getPath()));
                     }
                 } finally {
                     ExternalContentStoreProvider.removeCurrentSession();
@@ -288,9 +306,7 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
     void setNew(boolean isNew) throws RepositoryException {
         super.setNew(isNew);
         if (!isNew) {
-            if (!data.getTmpId().equals(data.getId())) {
-                getSession().getRepository().getStoreProvider().getExternalProviderInitializerService().updateExternalIdentifier(data.getTmpId(), data.getId(), getSession().getRepository().getProviderKey(), false);
-            }
+            // the identifier mapping of the temporary ID has been updated by the session
             data.markSaved();
         }
     }
@@ -831,74 +847,241 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         Property property = properties.get(s);
         if (property == null) {
             if (data.getLazyProperties() != null && data.getLazyProperties().contains(s)) {
+                loadLazyProperties(Collections.singleton(s), true);
+                if (!data.getLazyProperties().contains(s)) {
+                    return properties.get(s);
+                }
                 String[] values;
                 if (properties.containsKey(Constants.JCR_LANGUAGE)) {
                     values = session.getI18nPropertyValues(data, properties.get(Constants.JCR_LANGUAGE).getString(), s);
                 } else {
                     values = session.getPropertyValues(data, s);
                 }
-                data.getProperties().put(s, values);
-                data.getLazyProperties().remove(s);
-                ExtendedPropertyDefinition definition = getPropertyDefinition(s);
-                if (definition != null && definition.getName().equals(MATCH_ALL_PATTERN) && data != null && data.getType() != null && data.getType().equals(Constants.JAHIANT_TRANSLATION)) {
-                    definition = ((ExternalNodeImpl) getParent()).getPropertyDefinition(s);
+                return setLazyPropertyValues(s, values);
+            } else if (data.getLazyBinaryProperties() != null && data.getLazyBinaryProperties().contains(s)) {
+                loadLazyProperties(Collections.singleton(s), true);
+                if (!data.getLazyBinaryProperties().contains(s)) {
+                    return properties.get(s);
                 }
-                ExternalPropertyImpl p;
-                if (definition != null && definition.isMultiple()) {
-                    Value[] jcrValues = null;
-                    if (values != null) {
-                        jcrValues = new Value[values.length];
-                        for (int i = 0; i < values.length; i++) {
-                            if (values[i] != null) {
-                                jcrValues[i] = session.getValueFactory().createValue(values[i], definition.getRequiredType());
-                            } else {
-                                jcrValues[i] = null;
+                return setLazyBinaryPropertyValues(s, session.getBinaryPropertyValues(data, s));
+            } else {
+                throw new PathNotFoundException(s);
+            }
+        }
+        return property;
+    }
+
+    private ExternalPropertyImpl setLazyPropertyValues(String s, String[] values) throws RepositoryException {
+        data.getProperties().put(s, values);
+        data.getLazyProperties().remove(s);
+        ExtendedPropertyDefinition definition = getPropertyDefinition(s);
+        if (definition != null && definition.getName().equals(MATCH_ALL_PATTERN) && data != null && data.getType() != null && data.getType().equals(Constants.JAHIANT_TRANSLATION)) {
+            definition = ((ExternalNodeImpl) getParent()).getPropertyDefinition(s);
+        }
+        ExternalPropertyImpl p;
+        if (definition != null && definition.isMultiple()) {
+            Value[] jcrValues = null;
+            if (values != null) {
+                jcrValues = new Value[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        jcrValues[i] = session.getValueFactory().createValue(values[i], definition.getRequiredType());
+                    } else {
+                        jcrValues[i] = null;
+                    }
+                }
+            } 
+            p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValues);
+        } else {
+            Value jcrValue = null;
+            if (values != null && values.length > 0) {
+                jcrValue = session.getValueFactory().createValue(values[0], definition.getRequiredType());
+            }
+            p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValue);
+        }
+        properties.put(s, p);
+        return p;
+    }
+
+    private ExternalPropertyImpl setLazyBinaryPropertyValues(String s, Binary[] values) throws RepositoryException {
+        data.getBinaryProperties().put(s, values);
+        data.getLazyBinaryProperties().remove(s);
+        ExternalPropertyImpl p;
+        ExtendedPropertyDefinition definition = getPropertyDefinition(s);
+        if (definition != null && definition.isMultiple()) {
+            Value[] jcrValues = null;
+            if (values != null) {
+                jcrValues = new Value[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        jcrValues[i] = session.getValueFactory().createValue(values[i]);
+                    } else {
+                        jcrValues[i] = null;
+                    }
+                }
+            } 
+            p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValues);
+        } else {
+            Value jcrValue = null;
+            if (values != null && values.length > 0) {
+                jcrValue = session.getValueFactory().createValue(values[0]);
+            }
+            p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValue);
+        }
+        properties.put(s, p);
+        return p;
+    }
+
+    /**
+     * Loads the specified lazy properties with a single call to the data source, if it supports it. When withGroup is set, the
+     * properties are also loaded for the nodes of the same group which still have them lazy. Properties which are not returned by
+     * the data source stay lazy.
+     */
+    private void loadLazyProperties(Collection<String> names, boolean withGroup) throws RepositoryException {
+        if (!(session.getRepository().getDataSource() instanceof ExternalDataSource.CanLoadLazyPropertiesInBatch)) {
+            return;
+        }
+        if (properties.containsKey(Constants.JCR_LANGUAGE)) {
+            loadLazyI18nProperties(names, withGroup);
+            return;
+        }
+        List<ExternalNodeImpl> nodes = withGroup && group != null ? group : Collections.singletonList(this);
+
+        Set<String> lazyNames = new HashSet<String>();
+        Set<String> lazyBinaryNames = new HashSet<String>();
+        Map<String, ExternalNodeImpl> nodesByPath = new LinkedHashMap<String, ExternalNodeImpl>();
+        Map<String, ExternalNodeImpl> nodesWithBinariesByPath = new LinkedHashMap<String, ExternalNodeImpl>();
+        for (ExternalNodeImpl node : nodes) {
+            for (String name : names) {
+                if (node.data.getLazyProperties() != null && node.data.getLazyProperties().contains(name)) {
+                    lazyNames.add(name);
+                    nodesByPath.put(node.data.getPath(), node);
+                } else if (node.data.getLazyBinaryProperties() != null && node.data.getLazyBinaryProperties().contains(name)) {
+                    lazyBinaryNames.add(name);
+                    nodesWithBinariesByPath.put(node.data.getPath(), node);
+                }
+            }
+        }
+
+        try {
+            if (!nodesByPath.isEmpty()) {
+                Map<String, Map<String, String[]>> values = session.getPropertiesValues(nodesByPath.keySet(), lazyNames);
+                if (values != null) {
+                    for (Map.Entry<String, Map<String, String[]>> entry : values.entrySet()) {
+                        ExternalNodeImpl node = nodesByPath.get(entry.getKey());
+                        if (node != null && entry.getValue() != null) {
+                            for (Map.Entry<String, String[]> property : entry.getValue().entrySet()) {
+                                if (node.data.getLazyProperties().contains(property.getKey())) {
+                                    node.setLazyPropertyValues(property.getKey(), property.getValue());
+                                }
                             }
                         }
-                    } 
-                    p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValues);
-                } else {
-                    Value jcrValue = null;
-                    if (values != null && values.length > 0) {
-                        jcrValue = session.getValueFactory().createValue(values[0], definition.getRequiredType());
                     }
-                    p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValue);
                 }
-                properties.put(s, p);
-                return p;
-            } else if (data.getLazyBinaryProperties() != null && data.getLazyBinaryProperties().contains(s)) {
-                Binary[] values = session.getBinaryPropertyValues(data, s);
-                data.getBinaryProperties().put(s, values);
-                data.getLazyBinaryProperties().remove(s);
-                ExternalPropertyImpl p;
-                ExtendedPropertyDefinition definition = getPropertyDefinition(s);
-                if (definition != null && definition.isMultiple()) {
-                    Value[] jcrValues = null;
-                    if (values != null) {
-                        jcrValues = new Value[values.length];
-                        for (int i = 0; i < values.length; i++) {
-                            if (values[i] != null) {
-                                jcrValues[i] = session.getValueFactory().createValue(values[i]);
-                            } else {
-                                jcrValues[i] = null;
+            }
+            if (!nodesWithBinariesByPath.isEmpty()) {
+                Map<String, Map<String, Binary[]>> values = session.getBinaryPropertiesValues(nodesWithBinariesByPath.keySet(), lazyBinaryNames);
+                if (values != null) {
+                    for (Map.Entry<String, Map<String, Binary[]>> entry : values.entrySet()) {
+                        ExternalNodeImpl node = nodesWithBinariesByPath.get(entry.getKey());
+                        if (node != null && entry.getValue() != null) {
+                            for (Map.Entry<String, Binary[]> property : entry.getValue().entrySet()) {
+                                if (node.data.getLazyBinaryProperties().contains(property.getKey())) {
+                                    node.setLazyBinaryPropertyValues(property.getKey(), property.getValue());
+                                }
                             }
                         }
-                    } 
-                    p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValues);
-                } else {
-                    Value jcrValue = null;
-                    if (values != null && values.length > 0) {
-                        jcrValue = session.getValueFactory().createValue(values[0]);
                     }
-                    p = new ExternalPropertyImpl(new Name(s, NodeTypeRegistry.getInstance().getNamespaces()), this, session, jcrValue);
                 }
-                properties.put(s, p);
-                return p;
-            } else {
-                throw new PathNotFoundException(s);
             }
+        } catch (RepositoryException e) {
+            logger.warn("Cannot load lazy properties " + names + " of " + nodesByPath.keySet() + ", they will be loaded one by one", e);
+        }
+    }
+
+    /**
+     * Loads the specified lazy properties of a translation node with a single call to the data source. Translation nodes are not
+     * grouped, so when withGroup is set the group of the parent node is used instead: the values of the other parents are kept in
+     * their i18n properties, from which their translation node gets them without calling the data source again.
+     */
+    private void loadLazyI18nProperties(Collection<String> names, boolean withGroup) throws RepositoryException {
+        String lang = properties.get(Constants.JCR_LANGUAGE).getString();
+        String parentPath = StringUtils.substringBeforeLast(data.getPath(), "/");
+        if (parentPath.isEmpty()) {
+            parentPath = "/";
+        }
+
+        Set<String> lazyNames = new HashSet<String>();
+        for (String name : names) {
+            if (data.getLazyProperties() != null && data.getLazyProperties().contains(name)) {
+                lazyNames.add(name);
+            }
+        }
+        if (lazyNames.isEmpty()) {
+            return;
+        }
+        Map<String, ExternalNodeImpl> parentsByPath = new LinkedHashMap<String, ExternalNodeImpl>();
+        ExternalNodeImpl parent = withGroup ? session.getFromCacheByPath(parentPath) : null;
+        if (parent != null && parent.group != null) {
+            for (ExternalNodeImpl node : parent.group) {
+                Set<String> lazyI18nNames = node.data.getLazyI18nProperties() != null ? node.data.getLazyI18nProperties().get(lang) : null;
+                if (node != parent && lazyI18nNames != null && !Collections.disjoint(lazyI18nNames, lazyNames)) {
+                    parentsByPath.put(node.data.getPath(), node);
+                }
+            }
+        }
+        Set<String> paths = new LinkedHashSet<String>();
+        paths.add(parentPath);
+        paths.addAll(parentsByPath.keySet());
+
+        try {
+            Map<String, Map<String, String[]>> values = session.getI18nPropertiesValues(paths, lang, lazyNames);
+            if (values != null) {
+                for (Map.Entry<String, Map<String, String[]>> entry : values.entrySet()) {
+                    if (entry.getValue() == null) {
+                        continue;
+                    }
+                    if (entry.getKey().equals(parentPath)) {
+                        for (Map.Entry<String, String[]> property : entry.getValue().entrySet()) {
+                            if (data.getLazyProperties().contains(property.getKey())) {
+                                setLazyPropertyValues(property.getKey(), property.getValue());
+                            }
+                        }
+                    } else if (parentsByPath.containsKey(entry.getKey())) {
+                        parentsByPath.get(entry.getKey()).setLazyI18nPropertyValues(lang, entry.getValue());
+                    }
+                }
+            }
+        } catch (RepositoryException e) {
+            logger.warn("Cannot load lazy i18n properties " + names + " of " + paths + ", they will be loaded one by one", e);
+        }
+    }
+
+    /**
+     * Stores the values of lazy i18n properties loaded along with another translation node: they are set on the translation node
+     * if it is already loaded, and moved from the lazy i18n properties to the i18n properties of this node in any case.
+     */
+    private void setLazyI18nPropertyValues(String lang, Map<String, String[]> values) throws RepositoryException {
+        Set<String> lazyI18nNames = data.getLazyI18nProperties().get(lang);
+        ExternalNodeImpl translation = session.getFromCacheByPath((data.getPath().equals("/") ? "" : data.getPath()) + "/" + J_TRANSLATION + lang);
+        for (Map.Entry<String, String[]> property : values.entrySet()) {
+            if (!lazyI18nNames.contains(property.getKey())) {
+                continue;
+            }
+            if (data.getI18nProperties() == null) {
+                data.setI18nProperties(new HashMap<String, Map<String, String[]>>());
+            }
+            Map<String, String[]> i18nValues = data.getI18nProperties().get(lang);
+            if (i18nValues == null) {
+                i18nValues = new HashMap<String, String[]>();
+                data.getI18nProperties().put(lang, i18nValues);
+            }
+            i18nValues.put(property.getKey(), property.getValue());
+            if (translation != null && translation.data.getLazyProperties() != null && translation.data.getLazyProperties().contains(property.getKey())) {
+                translation.setLazyPropertyValues(property.getKey(), property.getValue());
+            }
+            lazyI18nNames.remove(property.getKey());
         }
-        return property;
     }
 
     /**
@@ -1728,6 +1911,11 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
                 return;
             }
             if (lazyPropertiesIterator == null && lazyProperties != null) {
+                try {
+                    loadLazyProperties(lazyProperties, false);
+                } catch (RepositoryException e) {
+                    logger.error(e.getMessage(), e);
+                }
                 lazyPropertiesIterator = lazyProperties.iterator();
             }
             if (lazyPropertiesIterator != null && lazyPropertiesIterator.hasNext()) {
@@ -1795,6 +1983,11 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         private final List<String> list;
         private NodeIterator extensionNodeIterator;
         private Node nextNode;
+        private boolean fetched = false;
+        private int index = 0;
+        private int preloadedUntil = 0;
+        private int preloadSize = 1;
+        private Set<String> unreadable = Collections.emptySet();
 
         public ExternalNodeIterator(List<String> list) {
             this(list, null);
@@ -1804,16 +1997,19 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
             this.extensionNodeIterator = extensionNodeIterator;
             this.list = list;
             this.it = list.iterator();
-            fetchNext();
         }
 
         private Node fetchNext() {
+            fetched = true;
             nextNode = null;
             if (it.hasNext()) {
                 Node next;
                 do {
                     try {
-                        next = getNode(it.next());
+                        preloadIfNeeded();
+                        index++;
+                        String name = it.next();
+                        next = unreadable.contains(name) ? null : getReadableNode(name);
                     } catch (RepositoryException e) {
                         next = null;
                         logger.debug(e.getMessage(), e);
@@ -1847,13 +2043,52 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
             return null;
         }
 
+        /**
+         * Loads the next children by chunks, so that their identifiers are resolved at once instead of one by one. The
+         * chunks start small and grow up to {@link #PRELOAD_SIZE}, so that reading only the first children stays cheap.
+         */
+        private void preloadIfNeeded() throws RepositoryException {
+            if (index < preloadedUntil) {
+                return;
+            }
+            preloadedUntil = Math.min(index + preloadSize, list.size());
+            preloadSize = Math.min(preloadSize * 2, PRELOAD_SIZE);
+            String path = getPath().endsWith("/") ? getPath() : getPath() + "/";
+            List<String> paths = new ArrayList<String>(preloadedUntil - index);
+            for (String name : list.subList(index, preloadedUntil)) {
+                paths.add(path + name);
+            }
+            // check the read permission of the whole chunk at once, and only load the readable nodes
+            List<String> readablePaths = session.getAccessControlManager().checkRead(paths);
+            if (readablePaths.size() < paths.size()) {
+                Set<String> readable = new HashSet<String>(readablePaths);
+                unreadable = new HashSet<String>();
+                for (String name : list.subList(index, preloadedUntil)) {
+                    if (!readable.contains(path + name)) {
+                        unreadable.add(name);
+                    }
+                }
+            } else {
+                unreadable = Collections.emptySet();
+            }
+            session.preloadNodes(readablePaths);
+        }
+
+        /**
+         * Gets a child of the current chunk: its read permission was already checked by {@link #preloadIfNeeded()}, so it is
+         * not checked a second time.
+         */
+        private Node getReadableNode(String name) throws RepositoryException {
+            return (Node) session.getItemWithNoCheck(getPath().endsWith("/") ? getPath() + name : getPath() + "/" + name);
+        }
+
         @Override
         public Node nextNode() {
-            if (nextNode == null) {
+            if (!hasNext()) {
                 throw new NoSuchElementException();
             }
             Node next = nextNode;
-            fetchNext();
+            fetched = false;
             pos++;
             return next;
         }
@@ -1877,6 +2112,9 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
 
         @Override
         public boolean hasNext() {
+            if (!fetched) {
+                fetchNext();
+            }
             return nextNode != null;
         }
 
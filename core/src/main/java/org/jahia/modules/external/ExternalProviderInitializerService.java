@@ -45,7 +45,9 @@ package org.jahia.modules.external;
 
 import org.jahia.services.content.JCRStoreProvider;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.jcr.RepositoryException;
 
@@ -96,6 +98,36 @@ public interface ExternalProviderInitializerService {
      */
     String getInternalIdentifier(String externalId, String providerKey) throws RepositoryException;
 
+    /**
+     * Reads internal UUIDs of the specified nodes via mapping table, using external IDs and provider key. All the IDs which are not
+     * found in the cache are read with a single query.
+     *
+     * @param externalIds
+     *            the external IDs to retrieve UUIDs for
+     * @param providerKey
+     *            the underlying provider key
+     * @return a map of the internal UUIDs by external ID; external IDs for which the mapping is not stored yet are not part of the map
+     * @throws RepositoryException
+     *             in case the internal identifiers cannot be retrieved from the database or any other issue
+     */
+    Map<String, String> getInternalIdentifiers(Collection<String> externalIds, String providerKey) throws RepositoryException;
+
+    /**
+     * Reads internal UUIDs of the specified nodes via mapping table, and generates the missing ones. The lookup of the IDs which are
+     * not found in the cache and the creation of the missing mappings are done in a single transaction.
+     *
+     * @param externalIds
+     *            the external IDs to retrieve or generate UUIDs for
+     * @param providerKey
+     *            the underlying provider key
+     * @param providerId
+     *            the ID provider is using as a prefix for the UUIDs of nodes
+     * @return a map of the internal UUIDs by external ID, containing all the requested external IDs
+     * @throws RepositoryException
+     *             in case the internal identifiers cannot be retrieved or stored into the database
+     */
+    Map<String, String> getOrCreateInternalIdentifiers(Collection<String> externalIds, String providerKey, String providerId) throws RepositoryException;
+
     /**
      * Returns internal provider ID for the specified provider. If the provider is not registered yet, creates an ID for it and stores an
      * entry in the database.
@@ -151,6 +183,23 @@ public interface ExternalProviderInitializerService {
     void updateExternalIdentifier(String oldExternalId, String newExternalId, String providerKey,
             boolean includeDescendants) throws RepositoryException;
 
+    /**
+     * Updates the external ID data for several entries at once, in a single transaction, e.g. as a result of a save operation
+     * where new nodes got their final ID.
+     *
+     * @param newExternalIds
+     *            the new external IDs to persist, by original external ID
+     * @param providerKey
+     *            the underlying provider key
+     * @param includeDescendants
+     *            if the external IDs are considered path-like (e.g. file system) and all the entries starting with those IDs should be also
+     *            updated (e.g. sub-folders)
+     * @throws RepositoryException
+     *             in case of a DB operation failure
+     */
+    void updateExternalIdentifiers(Map<String, String> newExternalIds, String providerKey, boolean includeDescendants)
+            throws RepositoryException;
+
     /**
      * @return the needed types to be override for locks.
      */
@@ -47,6 +47,8 @@ import javax.jcr.*;
 import javax.jcr.query.Query;
 
 import org.apache.jackrabbit.spi.commons.conversion.DefaultNamePathResolver;
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.cache.ExternalDataCache;
 
 import java.util.*;
 
@@ -123,12 +125,20 @@ public class ExternalRepositoryImpl implements Repository {
 
     private Map<String, Object> repositoryDescriptors = new HashMap<String, Object>();
     private ExternalContentStoreProvider storeProvider;
+    private ExternalDataCache dataCache;
+    private ExternalAclCache aclCache;
 
     public ExternalRepositoryImpl(ExternalContentStoreProvider storeProvider, ExternalDataSource dataSource, NamespaceRegistry nsRegistry) {
         this.storeProvider = storeProvider;
         this.dataSource = dataSource;
         this.namespaceRegistry = nsRegistry;
         this.namePathResolver = new DefaultNamePathResolver(nsRegistry);
+        if (storeProvider.isDataCacheEnabled()) {
+            this.dataCache = new ExternalDataCache(storeProvider.getDataCacheMaxEntries(), storeProvider.getDataCacheTimeToLiveSeconds());
+        }
+        if (storeProvider.isAclCacheEnabled()) {
+            this.aclCache = new ExternalAclCache(storeProvider.getAclCacheMaxEntries(), storeProvider.getAclCacheTimeToLiveSeconds());
+        }
         initDescriptors();
     }
 
@@ -136,6 +146,20 @@ public class ExternalRepositoryImpl implements Repository {
         return dataSource;
     }
 
+    /**
+     * @return the data cache shared by all the sessions of this repository or <code>null</code> if it is not enabled
+     */
+    public ExternalDataCache getDataCache() {
+        return dataCache;
+    }
+
+    /**
+     * @return the ACL cache shared by all the sessions of this repository or <code>null</code> if it is not enabled
+     */
+    public ExternalAclCache getAclCache() {
+        return aclCache;
+    }
+
     public String getDescriptor(String s) {
         Object descriptorObject = repositoryDescriptors.get(s);
         if (descriptorObject instanceof Value) {
@@ -0,0 +1,76 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * Cursor over the results of a search, returned by {@link ExternalDataSource.SearchableWithCursor}. Results are read
+ * one by one when the query result is iterated, so that the data source can fetch them from its backend by pages.
+ * The cursor is closed once all results have been read, or when the session is logged out.
+ */
+public interface ExternalSearchCursor {
+
+    /**
+     * @return true if there are more results
+     * @throws RepositoryException
+     */
+    boolean hasNext() throws RepositoryException;
+
+    /**
+     * @return the next result
+     * @throws RepositoryException
+     */
+    ExternalSearchResult next() throws RepositoryException;
+
+    /**
+     * @return the total number of results of the search, or -1 if unknown
+     */
+    long getSize();
+
+    /**
+     * Release the resources used by the cursor
+     */
+    void close();
+}
@@ -0,0 +1,81 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+/**
+ * A result of a search returned by an {@link ExternalSearchCursor} : the path of the matching node and, optionally, its
+ * data, so that the node does not need to be read again from the data source.
+ */
+public class ExternalSearchResult {
+
+    private final String path;
+    private final ExternalData data;
+
+    public ExternalSearchResult(String path) {
+        this(path, null);
+    }
+
+    public ExternalSearchResult(ExternalData data) {
+        this(data.getPath(), data);
+    }
+
+    public ExternalSearchResult(String path, ExternalData data) {
+        this.path = path;
+        this.data = data;
+    }
+
+    /**
+     * @return the path of the node, relative to the provider
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the data of the node, or <code>null</code> if it has to be read from the data source
+     */
+    public ExternalData getData() {
+        return data;
+    }
+}
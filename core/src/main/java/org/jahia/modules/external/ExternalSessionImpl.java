@@ -47,6 +47,9 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.core.security.JahiaLoginModule;
 import org.jahia.modules.external.acl.ExternalDataAce;
 import org.jahia.modules.external.acl.ExternalDataAcl;
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.cache.ExternalDataCache;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.jahia.services.content.JCRStoreProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,13 +80,8 @@ public class ExternalSessionImpl implements Session {
     static final String TRANSLATION_NODE_NAME_BASE = "j:translation_";
     static final String ACE_PREFIX = "j:ace:";
 
-    private static final boolean DEBUG = false;
     private static final Logger logger = LoggerFactory.getLogger(ExternalSessionImpl.class);
 
-    private static volatile int fromCacheCount = 0;
-    private static volatile int totalCacheChecks = 0;
-    private static volatile int totalSavedCalls = 0;
-
     private ExternalRepositoryImpl repository;
     private ExternalWorkspaceImpl workspace;
     private Credentials credentials;
@@ -94,6 +92,7 @@ public class ExternalSessionImpl implements Session {
     private Map<String, ExternalData> deletedData = new LinkedHashMap<String, ExternalData>();
     private Map<String, List<String>> orderedData = new LinkedHashMap<String, List<String>>();
     private Set<Binary> tempBinaries = new HashSet<Binary>();
+    private List<ExternalSearchCursor> searchCursors = new ArrayList<ExternalSearchCursor>();
     private Session extensionSession;
     private List<String> extensionAllowedTypes;
     private List<String> extensionForbiddenMixins;
@@ -142,7 +141,7 @@ public class ExternalSessionImpl implements Session {
         return this;
     }
 
-    private ExternalNodeImpl getFromCacheByPath(String path) {
+    ExternalNodeImpl getFromCacheByPath(String path) {
         return getFromCache(path, nodesByPath);
     }
 
@@ -150,25 +149,9 @@ public class ExternalSessionImpl implements Session {
         return getFromCache(id, nodesByIdentifier);
     }
 
-    private static ExternalNodeImpl getFromCache(String key, Map<String, ExternalNodeImpl> cache) {
-
-        totalCacheChecks++;
-
-        if (cache.isEmpty()) {
-            totalSavedCalls += fromCacheCount;
-            if (DEBUG) {
-                logger.debug("Saved " + fromCacheCount + " calls out of " + totalCacheChecks + " since last cache reset. Total saved calls: " + totalSavedCalls);
-            }
-            fromCacheCount = 0;
-            totalCacheChecks = 0;
-            return null;
-        }
-
-        final ExternalNodeImpl node = cache.get(key);
-        if (node != null) {
-            fromCacheCount++;
-        }
-
+    private ExternalNodeImpl getFromCache(String key, Map<String, ExternalNodeImpl> cache) {
+        final ExternalNodeImpl node = cache.isEmpty() ? null : cache.get(key);
+        getMetrics().recordSessionCacheCheck(node != null);
         return node;
     }
 
@@ -185,12 +168,18 @@ public class ExternalSessionImpl implements Session {
         try {
             // check provider availability if possible
             if (repository.getDataSource() instanceof ExternalDataSource.CanCheckAvailability) {
-                boolean available = ((ExternalDataSource.CanCheckAvailability) repository.getDataSource()).isAvailable();
+                long start = System.nanoTime();
+                boolean available;
+                try {
+                    available = ((ExternalDataSource.CanCheckAvailability) repository.getDataSource()).isAvailable();
+                } finally {
+                    getMetrics().record(ExternalProviderMetrics.IS_AVAILABLE, start);
+                }
                 if (!available) {
                     throw new RepositoryException("Provider '" + repository.getProviderKey() + "' is currently unavailable");
                 }
             }
-            ExternalData rootFileObject = repository.getDataSource().getItemByPath("/");
+            ExternalData rootFileObject = getItemDataByPath("/");
             final ExternalNodeImpl externalNode = new ExternalNodeImpl(rootFileObject, this);
             registerNode(externalNode);
             return externalNode;
@@ -279,7 +268,7 @@ public class ExternalSessionImpl implements Session {
         }
         ExternalContentStoreProvider.setCurrentSession(this);
         try {
-            Node n = new ExternalNodeImpl(repository.getDataSource().getItemByIdentifier(uuid), this);
+            Node n = new ExternalNodeImpl(getItemDataByIdentifier(uuid), this);
             if (deletedData.containsKey(n.getPath())) {
                 throw new ItemNotFoundException("This node has been deleted");
             }
@@ -345,7 +334,7 @@ public class ExternalSessionImpl implements Session {
                 // Try to get the item as a node
                 ExternalContentStoreProvider.setCurrentSession(this);
                 try {
-                    ExternalData data = repository.getDataSource().getItemByPath(path);
+                    ExternalData data = getItemDataByPath(path);
                     final ExternalNodeImpl node = new ExternalNodeImpl(data, this);
                     registerNode(node);
                     return node;
@@ -353,7 +342,7 @@ public class ExternalSessionImpl implements Session {
                     // Or a property in the parent node
                     ExternalNodeImpl parentFromPath = getFromCacheByPath(parentPath);
                     if (parentFromPath == null) {
-                        ExternalData data = repository.getDataSource().getItemByPath(parentPath);
+                        ExternalData data = getItemDataByPath(parentPath);
                         final ExternalNodeImpl node = new ExternalNodeImpl(data, this);
                         registerNode(node);
                         parentFromPath = node;
@@ -448,7 +437,7 @@ public class ExternalSessionImpl implements Session {
         } else {
             ExternalContentStoreProvider.setCurrentSession(this);
             try {
-                parentObject = repository.getDataSource().getItemByPath(parentPath);
+                parentObject = getItemDataByPath(parentPath);
                 final ExternalNodeImpl node = new ExternalNodeImpl(parentObject, this);
                 registerNode(node);
             } finally {
@@ -458,13 +447,261 @@ public class ExternalSessionImpl implements Session {
         return parentObject;
     }
 
+    /**
+     * Reads the data at the specified path from the shared data cache if enabled, or from the data source.
+     */
+    ExternalData getItemDataByPath(String path) throws PathNotFoundException {
+        ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache == null) {
+            return loadItemDataByPath(path);
+        }
+        long generation = dataCache.getGeneration();
+        ExternalData data = dataCache.getItemByPath(workspace.getName(), path);
+        if (data == null) {
+            data = loadItemDataByPath(path);
+            dataCache.putItem(workspace.getName(), data, generation);
+        }
+        return data;
+    }
+
+    /**
+     * Reads the data with the specified external identifier from the shared data cache if enabled, or from the data source.
+     */
+    ExternalData getItemDataByIdentifier(String identifier) throws ItemNotFoundException {
+        ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache == null) {
+            return loadItemDataByIdentifier(identifier);
+        }
+        long generation = dataCache.getGeneration();
+        ExternalData data = dataCache.getItemByIdentifier(workspace.getName(), identifier);
+        if (data == null) {
+            data = loadItemDataByIdentifier(identifier);
+            dataCache.putItem(workspace.getName(), data, generation);
+        }
+        return data;
+    }
+
+    /**
+     * Reads the children names of the specified path from the shared data cache if enabled, or from the data source.
+     */
+    List<String> getChildrenNames(String path) throws RepositoryException {
+        ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache == null) {
+            return loadChildrenNames(path);
+        }
+        long generation = dataCache.getGeneration();
+        List<String> children = dataCache.getChildren(workspace.getName(), path);
+        if (children == null) {
+            children = loadChildrenNames(path);
+            dataCache.putChildren(workspace.getName(), path, children, generation);
+        }
+        return children;
+    }
+
+    /**
+     * Reads the children data of the specified path from the shared data cache if enabled, or from a data source
+     * implementing {@link ExternalDataSource.CanLoadChildrenInBatch}.
+     */
+    List<ExternalData> getChildrenData(String path) throws RepositoryException {
+        ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache == null) {
+            return loadChildrenData(path);
+        }
+        long generation = dataCache.getGeneration();
+        List<ExternalData> children = dataCache.getChildrenNodes(workspace.getName(), path);
+        if (children == null) {
+            children = loadChildrenData(path);
+            dataCache.putChildrenNodes(workspace.getName(), path, children, generation);
+        }
+        return children;
+    }
+
+    private ExternalData loadItemDataByPath(String path) throws PathNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return checkAcl(repository.getDataSource().getItemByPath(path));
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_ITEM_BY_PATH, start);
+        }
+    }
+
+    private ExternalData loadItemDataByIdentifier(String identifier) throws ItemNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return checkAcl(repository.getDataSource().getItemByIdentifier(identifier));
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_ITEM_BY_IDENTIFIER, start);
+        }
+    }
+
+    private List<String> loadChildrenNames(String path) throws RepositoryException {
+        long start = System.nanoTime();
+        try {
+            return repository.getDataSource().getChildren(path);
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_CHILDREN, start);
+        }
+    }
+
+    private List<ExternalData> loadChildrenData(String path) throws RepositoryException {
+        long start = System.nanoTime();
+        try {
+            return checkAcl(((ExternalDataSource.CanLoadChildrenInBatch) repository.getDataSource()).getChildrenNodes(path));
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_CHILDREN_NODES, start);
+        }
+    }
+
+    /**
+     * @return the metrics of the provider of this session
+     */
+    ExternalProviderMetrics getMetrics() {
+        return repository.getStoreProvider().getMetrics();
+    }
+
+    /**
+     * Invalidates the shared ACL cache, if enabled, when the ACL returned by an
+     * {@link ExternalDataSource.AccessControllable} data source has changed since it was last read.
+     */
+    private ExternalData checkAcl(ExternalData data) {
+        ExternalAclCache aclCache = repository.getAclCache();
+        if (aclCache != null && data != null && repository.getDataSource() instanceof ExternalDataSource.AccessControllable) {
+            aclCache.checkAcl(workspace.getName(), data);
+        }
+        return data;
+    }
+
+    private List<ExternalData> checkAcl(List<ExternalData> dataList) {
+        if (repository.getAclCache() != null && dataList != null) {
+            for (ExternalData data : dataList) {
+                checkAcl(data);
+            }
+        }
+        return dataList;
+    }
+
+    /**
+     * Resolves, with a single call to the identifier mapping service, the internal identifiers of the nodes which are about to be
+     * created for the specified data, so that the nodes find them in the identifier cache.
+     */
+    void prefetchInternalIdentifiers(Collection<ExternalData> data) throws RepositoryException {
+        boolean supportsUuid = repository.getDataSource().isSupportsUuid();
+        Set<String> externalIds = new LinkedHashSet<String>();
+        for (ExternalData d : data) {
+            if (!d.isNew() && (!supportsUuid || d.getId().startsWith(TRANSLATION_PREFIX))) {
+                externalIds.add(d.getId());
+            }
+        }
+        if (externalIds.size() > 1) {
+            repository.getStoreProvider().getOrCreateInternalIdentifiers(externalIds);
+        }
+    }
+
+    /**
+     * Loads and registers the nodes at the specified paths which are not known by this session yet, resolving all their internal
+     * identifiers at once. Does nothing if the data source provides the UUIDs itself, unless it can load lazy properties in batch :
+     * the nodes are then grouped so that their lazy properties are loaded together. Paths which cannot be loaded are ignored, they
+     * will fail when read individually.
+     *
+     * @param paths the paths of the nodes to load
+     */
+    public void preloadNodes(Collection<String> paths) throws RepositoryException {
+        preloadNodes(paths, Collections.<String, ExternalData>emptyMap());
+    }
+
+    /**
+     * Same as {@link #preloadNodes(Collection)}, but the nodes for which the data is already known are registered without reading
+     * them from the data source, even if the data source provides the UUIDs itself.
+     *
+     * @param paths      the paths of the nodes to load
+     * @param dataByPath the already known data, by path
+     */
+    public void preloadNodes(Collection<String> paths, Map<String, ExternalData> dataByPath) throws RepositoryException {
+        ExternalDataSource dataSource = repository.getDataSource();
+        boolean batchLazyProperties = dataSource instanceof ExternalDataSource.CanLoadLazyPropertiesInBatch;
+        boolean load = (!dataSource.isSupportsUuid() || batchLazyProperties) && paths.size() > 1;
+        if (!load && dataByPath.isEmpty()) {
+            return;
+        }
+        List<ExternalData> toRegister = new ArrayList<ExternalData>(paths.size());
+        List<ExternalNodeImpl> group = new ArrayList<ExternalNodeImpl>(paths.size());
+        ExternalContentStoreProvider.setCurrentSession(this);
+        try {
+            for (String path : paths) {
+                if (deletedData.containsKey(path) || path.contains("/" + TRANSLATION_NODE_NAME_BASE)
+                        || path.contains("/" + ExternalDataAcl.ACL_NODE_NAME)
+                        || getRepository().getStoreProvider().getReservedNodes().contains(StringUtils.substringAfterLast(path, "/"))) {
+                    continue;
+                }
+                if (nodesByPath.containsKey(path)) {
+                    group.add(nodesByPath.get(path));
+                    continue;
+                }
+                if (dataByPath.containsKey(path)) {
+                    toRegister.add(dataByPath.get(path));
+                } else if (load) {
+                    try {
+                        toRegister.add(getItemDataByPath(path));
+                    } catch (PathNotFoundException e) {
+                        logger.debug("Cannot preload node {}", path);
+                    }
+                }
+            }
+            prefetchInternalIdentifiers(toRegister);
+            for (ExternalData data : toRegister) {
+                ExternalNodeImpl node = new ExternalNodeImpl(data, this);
+                registerNode(node);
+                group.add(node);
+            }
+        } finally {
+            ExternalContentStoreProvider.removeCurrentSession();
+        }
+        if (batchLazyProperties) {
+            ExternalNodeImpl.group(group);
+        }
+    }
+
+    /**
+     * Removes the entries related to the specified path from the shared data cache, if enabled.
+     */
+    private void invalidateDataCache(String path, boolean includeDescendants) {
+        ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache != null) {
+            dataCache.invalidate(path, includeDescendants);
+        }
+    }
+
+    /**
+     * Removes the entries of the moved subtree, at its old and new locations, from the shared data and ACL caches.
+     *
+     * @param source the path of the moved node before the move
+     * @param dest the path of the moved node after the move
+     */
+    protected void invalidateCachesAfterMove(String source, String dest) {
+        invalidateDataCache(source, true);
+        invalidateDataCache(dest, true);
+        invalidateAclCache();
+    }
+
+    /**
+     * Removes all the entries of the shared ACL cache, if enabled, as the permissions of a whole subtree may have changed.
+     */
+    private void invalidateAclCache() {
+        ExternalAclCache aclCache = repository.getAclCache();
+        if (aclCache != null) {
+            aclCache.invalidate();
+        }
+    }
+
     protected String[] getPropertyValues(ExternalData data, String propertyName) throws PathNotFoundException {
         ExternalDataSource dataSource = repository.getDataSource();
         if (dataSource instanceof ExternalDataSource.LazyProperty) {
             ExternalContentStoreProvider.setCurrentSession(this);
+            long start = System.nanoTime();
             try {
                 return ((ExternalDataSource.LazyProperty) dataSource).getPropertyValues(data.getPath(), propertyName);
             } finally {
+                getMetrics().record(ExternalProviderMetrics.GET_LAZY_PROPERTY, start);
                 ExternalContentStoreProvider.removeCurrentSession();
             }
         } else {
@@ -476,9 +713,11 @@ public class ExternalSessionImpl implements Session {
         ExternalDataSource dataSource = repository.getDataSource();
         if (dataSource instanceof ExternalDataSource.LazyProperty) {
             ExternalContentStoreProvider.setCurrentSession(this);
+            long start = System.nanoTime();
             try {
                 return ((ExternalDataSource.LazyProperty) dataSource).getI18nPropertyValues(StringUtils.substringBeforeLast(data.getPath(), "/"), lang, propertyName);
             } finally {
+                getMetrics().record(ExternalProviderMetrics.GET_LAZY_PROPERTY, start);
                 ExternalContentStoreProvider.removeCurrentSession();
             }
         } else {
@@ -490,9 +729,11 @@ public class ExternalSessionImpl implements Session {
         ExternalDataSource dataSource = repository.getDataSource();
         if (dataSource instanceof ExternalDataSource.LazyProperty) {
             ExternalContentStoreProvider.setCurrentSession(this);
+            long start = System.nanoTime();
             try {
                 return ((ExternalDataSource.LazyProperty) dataSource).getBinaryPropertyValues(data.getPath(), propertyName);
             } finally {
+                getMetrics().record(ExternalProviderMetrics.GET_LAZY_PROPERTY, start);
                 ExternalContentStoreProvider.removeCurrentSession();
             }
         } else {
@@ -500,6 +741,47 @@ public class ExternalSessionImpl implements Session {
         }
     }
 
+    protected Map<String, Map<String, String[]>> getPropertiesValues(Collection<String> paths, Collection<String> propertyNames) throws RepositoryException {
+        ExternalContentStoreProvider.setCurrentSession(this);
+        long start = System.nanoTime();
+        try {
+            return getBatchLazyPropertiesDataSource().getPropertiesValues(paths, propertyNames);
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_LAZY_PROPERTIES, start);
+            ExternalContentStoreProvider.removeCurrentSession();
+        }
+    }
+
+    protected Map<String, Map<String, String[]>> getI18nPropertiesValues(Collection<String> paths, String lang, Collection<String> propertyNames) throws RepositoryException {
+        ExternalContentStoreProvider.setCurrentSession(this);
+        long start = System.nanoTime();
+        try {
+            return getBatchLazyPropertiesDataSource().getI18nPropertiesValues(paths, lang, propertyNames);
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_LAZY_PROPERTIES, start);
+            ExternalContentStoreProvider.removeCurrentSession();
+        }
+    }
+
+    protected Map<String, Map<String, Binary[]>> getBinaryPropertiesValues(Collection<String> paths, Collection<String> propertyNames) throws RepositoryException {
+        ExternalContentStoreProvider.setCurrentSession(this);
+        long start = System.nanoTime();
+        try {
+            return getBatchLazyPropertiesDataSource().getBinaryPropertiesValues(paths, propertyNames);
+        } finally {
+            getMetrics().record(ExternalProviderMetrics.GET_LAZY_PROPERTIES, start);
+            ExternalContentStoreProvider.removeCurrentSession();
+        }
+    }
+
+    private ExternalDataSource.CanLoadLazyPropertiesInBatch getBatchLazyPropertiesDataSource() throws PathNotFoundException {
+        ExternalDataSource dataSource = repository.getDataSource();
+        if (dataSource instanceof ExternalDataSource.CanLoadLazyPropertiesInBatch) {
+            return (ExternalDataSource.CanLoadLazyPropertiesInBatch) dataSource;
+        }
+        throw new PathNotFoundException(repository.getProviderKey() + " doesn't support lazy properties in batch");
+    }
+
     @Override
     public boolean itemExists(String path) throws RepositoryException {
         // todo : use repository.getDataSource().itemExists(path)
@@ -559,13 +841,19 @@ public class ExternalSessionImpl implements Session {
             try {
 
                 //todo : store move in session and move node in save
-                ((ExternalDataSource.Writable) repository.getDataSource()).move(source, dest);
+                long start = System.nanoTime();
+                try {
+                    ((ExternalDataSource.Writable) repository.getDataSource()).move(source, dest);
+                } finally {
+                    getMetrics().record(ExternalProviderMetrics.MOVE, start);
+                }
+                invalidateCachesAfterMove(source, dest);
 
                 int oldIndex = previousParentChildren.indexOf(externalNode.getName());
                 previousParentChildren.remove(externalNode.getName());
                 unregisterNode(externalNode);
 
-                ExternalData newData = repository.getDataSource().getItemByPath(dest);
+                ExternalData newData = getItemDataByPath(dest);
 
                 final ExternalNodeImpl newExternalNode = new ExternalNodeImpl(newData, this);
                 registerNode(newExternalNode);
@@ -610,6 +898,7 @@ public class ExternalSessionImpl implements Session {
         }
         ExternalContentStoreProvider.setCurrentSession(this);
         try {
+            boolean aclChanges = hasAclChanges();
             Map<String, ExternalData> changedDataWithI18n = new LinkedHashMap<String, ExternalData>();
             for (Map.Entry<String, ExternalData> entry : changedData.entrySet()) {
                 String path = entry.getKey();
@@ -621,7 +910,7 @@ public class ExternalSessionImpl implements Session {
                     if (changedDataWithI18n.containsKey(parentPath)) {
                         parentData = changedDataWithI18n.get(parentPath);
                     } else {
-                        parentData = repository.getDataSource().getItemByPath(parentPath);
+                        parentData = loadItemDataByPath(parentPath);
                     }
                     Map<String, Map<String, String[]>> i18nProperties = parentData.getI18nProperties();
                     if (i18nProperties == null) {
@@ -645,37 +934,38 @@ public class ExternalSessionImpl implements Session {
                 }
             }
             ExternalDataSource.Writable writableDataSource = (ExternalDataSource.Writable) repository.getDataSource();
-            for (String path : orderedData.keySet()) {
-                writableDataSource.order(path, orderedData.get(path));
-            }
-            orderedData.clear();
-            for (ExternalData data : changedDataWithI18n.values()) {
-                writableDataSource.saveItem(data);
-                // when data contain binaries we flush the nodes so the binary will be load
-                // from the external data source after an upload, avoid to cache a tmp binary after upload for exemple
-                if (data.getBinaryProperties() != null && data.getBinaryProperties().size() > 0) {
-                    ExternalNodeImpl cachedNode = nodesByPath.get(data.getPath());
-                    if (cachedNode != null) {
-                        nodesByPath.remove(data.getPath());
-                        nodesByIdentifier.remove(cachedNode.getIdentifier());
+            if (writableDataSource instanceof ExternalDataSource.CanSaveInBatch) {
+                saveChanges((ExternalDataSource.CanSaveInBatch) writableDataSource, changedDataWithI18n.values());
+            } else {
+                for (String path : orderedData.keySet()) {
+                    long start = System.nanoTime();
+                    writableDataSource.order(path, orderedData.get(path));
+                    getMetrics().record(ExternalProviderMetrics.ORDER, start);
+                    invalidateDataCache(path, false);
+                }
+                orderedData.clear();
+                for (ExternalData data : changedDataWithI18n.values()) {
+                    long start = System.nanoTime();
+                    writableDataSource.saveItem(data);
+                    getMetrics().record(ExternalProviderMetrics.SAVE_ITEM, start);
+                    invalidateDataCache(data.getPath(), false);
+                    flushNodeWithBinaries(data);
+                }
+                changedData.clear();
+                if (!deletedData.isEmpty()) {
+                    for (String path : deletedData.keySet()) {
+                        long start = System.nanoTime();
+                        writableDataSource.removeItemByPath(path);
+                        getMetrics().record(ExternalProviderMetrics.REMOVE_ITEM, start);
+                        invalidateDataCache(path, true);
                     }
+                    deleteInternalIdentifiers();
                 }
             }
-
-            changedData.clear();
-            if (!deletedData.isEmpty()) {
-                List<String> toBeDeleted = new LinkedList<String>();
-                for (String path : deletedData.keySet()) {
-                    writableDataSource.removeItemByPath(path);
-                    toBeDeleted.add(deletedData.get(path).getId());
-                }
-                getRepository()
-                        .getStoreProvider()
-                        .getExternalProviderInitializerService()
-                        .delete(toBeDeleted, getRepository().getStoreProvider().getKey(),
-                                getRepository().getDataSource().isSupportsHierarchicalIdentifiers());
-                deletedData.clear();
+            if (aclChanges) {
+                invalidateAclCache();
             }
+            updateInternalIdentifiersOfNewItems();
             for (ExternalItemImpl newItem : newItems) {
                 newItem.setNew(false);
             }
@@ -685,6 +975,122 @@ public class ExternalSessionImpl implements Session {
         }
     }
 
+    /**
+     * @return <code>true</code> if an ACL or an ACE is changed or removed, or if a node carrying an ACL is saved
+     */
+    private boolean hasAclChanges() {
+        if (repository.getAclCache() == null) {
+            return false;
+        }
+        for (String path : deletedData.keySet()) {
+            if (path.contains("/" + ExternalDataAcl.ACL_NODE_NAME)) {
+                return true;
+            }
+        }
+        for (Map.Entry<String, ExternalData> entry : changedData.entrySet()) {
+            if (entry.getKey().contains("/" + ExternalDataAcl.ACL_NODE_NAME) || entry.getValue().getExternalDataAcl() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes all the changes to the data source at once. The pending changes are kept if the data source fails.
+     */
+    private void saveChanges(ExternalDataSource.CanSaveInBatch dataSource, Collection<ExternalData> changedDataWithI18n) throws RepositoryException {
+        List<ExternalData> savedItems = new ArrayList<ExternalData>(changedDataWithI18n);
+        Collections.sort(savedItems, new Comparator<ExternalData>() {
+            @Override
+            public int compare(ExternalData o1, ExternalData o2) {
+                return StringUtils.countMatches(o1.getPath(), "/") - StringUtils.countMatches(o2.getPath(), "/");
+            }
+        });
+        List<String> removedPaths = new ArrayList<String>(deletedData.keySet());
+        Collections.sort(removedPaths, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return StringUtils.countMatches(o2, "/") - StringUtils.countMatches(o1, "/");
+            }
+        });
+        ExternalChangeSet changes = new ExternalChangeSet(savedItems, new LinkedHashMap<String, List<String>>(orderedData), removedPaths);
+        try {
+            if (!changes.isEmpty()) {
+                long start = System.nanoTime();
+                try {
+                    dataSource.saveChanges(changes);
+                } finally {
+                    getMetrics().record(ExternalProviderMetrics.SAVE_CHANGES, start);
+                }
+            }
+        } finally {
+            for (ExternalData data : savedItems) {
+                invalidateDataCache(data.getPath(), false);
+            }
+            for (String path : changes.getOrderedChildren().keySet()) {
+                invalidateDataCache(path, false);
+            }
+            for (String path : removedPaths) {
+                invalidateDataCache(path, true);
+            }
+        }
+        orderedData.clear();
+        for (ExternalData data : savedItems) {
+            flushNodeWithBinaries(data);
+        }
+        changedData.clear();
+        if (!deletedData.isEmpty()) {
+            deleteInternalIdentifiers();
+        }
+    }
+
+    /**
+     * When data contain binaries we flush the nodes so the binary will be load from the external data source after an upload,
+     * avoid to cache a tmp binary after upload for exemple
+     */
+    private void flushNodeWithBinaries(ExternalData data) {
+        if (data.getBinaryProperties() != null && data.getBinaryProperties().size() > 0) {
+            ExternalNodeImpl cachedNode = nodesByPath.get(data.getPath());
+            if (cachedNode != null) {
+                nodesByPath.remove(data.getPath());
+                nodesByIdentifier.remove(cachedNode.getIdentifier());
+            }
+        }
+    }
+
+    private void deleteInternalIdentifiers() throws RepositoryException {
+        List<String> toBeDeleted = new LinkedList<String>();
+        for (ExternalData data : deletedData.values()) {
+            toBeDeleted.add(data.getId());
+        }
+        getRepository()
+                .getStoreProvider()
+                .getExternalProviderInitializerService()
+                .delete(toBeDeleted, getRepository().getStoreProvider().getKey(),
+                        getRepository().getDataSource().isSupportsHierarchicalIdentifiers());
+        deletedData.clear();
+    }
+
+    /**
+     * New nodes may get their final ID from the data source when saved : the mappings of their temporary IDs are all updated at
+     * once.
+     */
+    private void updateInternalIdentifiersOfNewItems() throws RepositoryException {
+        Map<String, String> newExternalIds = new LinkedHashMap<String, String>();
+        for (ExternalItemImpl newItem : newItems) {
+            if (newItem instanceof ExternalNodeImpl) {
+                ExternalData data = ((ExternalNodeImpl) newItem).getData();
+                if (data.getTmpId() != null && !data.getTmpId().equals(data.getId())) {
+                    newExternalIds.put(data.getTmpId(), data.getId());
+                }
+            }
+        }
+        if (!newExternalIds.isEmpty()) {
+            getRepository().getStoreProvider().getExternalProviderInitializerService()
+                    .updateExternalIdentifiers(newExternalIds, getRepository().getProviderKey(), false);
+        }
+    }
+
     @Override
     public void refresh(boolean keepChanges) throws RepositoryException {
         if (!keepChanges) {
@@ -786,6 +1192,10 @@ public class ExternalSessionImpl implements Session {
         for (Binary binary : tempBinaries) {
             binary.dispose();
         }
+        for (ExternalSearchCursor cursor : searchCursors) {
+            cursor.close();
+        }
+        searchCursors.clear();
         accessControlManager = null;
     }
 
@@ -866,6 +1276,14 @@ public class ExternalSessionImpl implements Session {
         tempBinaries.add(binary);
     }
 
+    public void registerSearchCursor(ExternalSearchCursor cursor) {
+        searchCursors.add(cursor);
+    }
+
+    public void unregisterSearchCursor(ExternalSearchCursor cursor) {
+        searchCursors.remove(cursor);
+    }
+
 
     public Set<ExternalItemImpl> getNewItems() {
         return newItems;
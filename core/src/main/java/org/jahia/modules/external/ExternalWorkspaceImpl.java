@@ -43,6 +43,7 @@
  */
 package org.jahia.modules.external;
 
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.jahia.modules.external.query.ExternalQueryManager;
 import org.xml.sax.ContentHandler;
 
@@ -101,9 +102,12 @@ public class ExternalWorkspaceImpl implements Workspace {
     public void move(String source, String dest) throws ConstraintViolationException, VersionException, AccessDeniedException, PathNotFoundException, ItemExistsException, LockException, RepositoryException {
         if (externalSession.getRepository().getDataSource() instanceof ExternalDataSource.Writable) {
             ExternalContentStoreProvider.setCurrentSession(externalSession);
+            long start = System.nanoTime();
             try {
                 ((ExternalDataSource.Writable) externalSession.getRepository().getDataSource()).move(source, dest);
+                externalSession.invalidateCachesAfterMove(source, dest);
             } finally {
+                externalSession.getMetrics().record(ExternalProviderMetrics.MOVE, start);
                 ExternalContentStoreProvider.removeCurrentSession();
             }
         } else {
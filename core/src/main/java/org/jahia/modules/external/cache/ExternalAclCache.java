@@ -0,0 +1,272 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.cache;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.acl.ExternalDataAcl;
+import org.jahia.utils.security.AccessManagerUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository level cache of the permission checks done by the {@link org.jahia.modules.external.ExternalAccessControlManager},
+ * shared by all the sessions opened on the same mount point by the same user.
+ * <p>
+ * Entries are kept per workspace and per principal, in concurrent maps bounded in number and in time (time to live), so
+ * that permission checks do not contend on a lock. As the permissions of a node depend on the ACLs of all its ancestors
+ * and on the roles definitions, any ACL change invalidates the whole cache. ACL changes are detected on saves, on API
+ * events, on ACL and role changes in the default repository, and when the data source returns a different
+ * {@link ExternalDataAcl} for a node.
+ */
+public class ExternalAclCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalAclCache.class);
+
+    private final int maxEntries;
+    private final long timeToLiveSeconds;
+
+    private final ConcurrentMap<String, PrincipalEntry> entries;
+    private final ConcurrentMap<String, Integer> aclFingerprints;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the maximum number of principals, and of entries kept for each principal and each kind of entry
+     *                   (permissions, compiled ACLs, privileges)
+     * @param timeToLiveSeconds the number of seconds an entry is kept, 0 or less means no time limit. Principals are
+     *                          dropped when they have not been used for this time.
+     */
+    public ExternalAclCache(int maxEntries, long timeToLiveSeconds) {
+        this.maxEntries = maxEntries;
+        this.timeToLiveSeconds = timeToLiveSeconds;
+        this.entries = this.<String, PrincipalEntry>newCache(true).asMap();
+        this.aclFingerprints = this.<Integer>newMap();
+    }
+
+    /**
+     * Returns the map of permission decisions of the specified principal, to be passed to
+     * {@link AccessManagerUtils#isGranted}. The map must not be kept after the check, as it is dropped on invalidation.
+     *
+     * @param workspaceName the workspace name
+     * @param userID the user name
+     * @param realm the user realm, can be <code>null</code>
+     * @return a concurrent map of permission decisions
+     */
+    public Map<String, Boolean> getPathPermissions(String workspaceName, String userID, String realm) {
+        return getEntry(workspaceName, userID, realm).pathPermissions;
+    }
+
+    /**
+     * Returns the map of compiled ACLs of the specified principal, to be passed to {@link AccessManagerUtils#isGranted}.
+     * The map must not be kept after the check, as it is dropped on invalidation.
+     *
+     * @param workspaceName the workspace name
+     * @param userID the user name
+     * @param realm the user realm, can be <code>null</code>
+     * @return a concurrent map of compiled ACLs
+     */
+    public Map<Object, AccessManagerUtils.CompiledAcl> getCompiledAcls(String workspaceName, String userID, String realm) {
+        return getEntry(workspaceName, userID, realm).compiledAcls;
+    }
+
+    /**
+     * Returns the privilege names returned by an {@link org.jahia.modules.external.ExternalDataSource.SupportPrivileges}
+     * data source for the specified principal and path.
+     *
+     * @param workspaceName the workspace name
+     * @param userID the user name
+     * @param realm the user realm, can be <code>null</code>
+     * @param path the node path
+     * @return the cached privilege names or <code>null</code> if they are not cached
+     */
+    public String[] getPrivilegesNames(String workspaceName, String userID, String realm, String path) {
+        String[] names = getEntry(workspaceName, userID, realm).privilegesNames.get(path);
+        if (names != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return names;
+    }
+
+    /**
+     * Stores the privilege names returned by an {@link org.jahia.modules.external.ExternalDataSource.SupportPrivileges}
+     * data source for the specified principal and path.
+     *
+     * @param workspaceName the workspace name
+     * @param userID the user name
+     * @param realm the user realm, can be <code>null</code>
+     * @param path the node path
+     * @param names the privilege names
+     */
+    public void putPrivilegesNames(String workspaceName, String userID, String realm, String path, String[] names) {
+        if (names != null) {
+            getEntry(workspaceName, userID, realm).privilegesNames.put(path, names);
+        }
+    }
+
+    /**
+     * Compares the ACL of the specified data, as returned by an
+     * {@link org.jahia.modules.external.ExternalDataSource.AccessControllable} data source, with the one previously
+     * returned for the same path, and invalidates the cache if it has changed.
+     *
+     * @param workspaceName the workspace name
+     * @param data the data returned by the data source
+     */
+    public void checkAcl(String workspaceName, ExternalData data) {
+        ExternalDataAcl acl = data.getExternalDataAcl();
+        Integer fingerprint = acl != null ? Objects.hashCode(acl.isInherit(), new HashSet<>(acl.getAcl())) : 0;
+        Integer previous = aclFingerprints.put(workspaceName + "\n" + data.getPath(), fingerprint);
+        if (previous != null && !previous.equals(fingerprint)) {
+            logger.debug("ACL of {} has changed", data.getPath());
+            invalidate();
+        }
+    }
+
+    /**
+     * Removes all the permission decisions, compiled ACLs and privileges.
+     */
+    public void invalidate() {
+        if (!entries.isEmpty()) {
+            entries.clear();
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all the entries, including the known ACLs.
+     */
+    public void clear() {
+        entries.clear();
+        aclFingerprints.clear();
+    }
+
+    /**
+     * @return the number of privilege names read from the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of privilege names not found in the cache
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of times the cache was invalidated because of an ACL change
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return the number of principals having entries in the cache
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalAclCache [principals=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", invalidations=" + getInvalidationCount() + "]";
+    }
+
+    private PrincipalEntry getEntry(String workspaceName, String userID, String realm) {
+        String key = workspaceName + "\n" + userID + "\n" + (realm != null ? realm : "");
+        PrincipalEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = new PrincipalEntry();
+            PrincipalEntry existing = entries.putIfAbsent(key, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
+    private <T> ConcurrentMap<String, T> newMap() {
+        return this.<String, T>newCache(false).asMap();
+    }
+
+    private <K, T> Cache<K, T> newCache(boolean expireAfterAccess) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxEntries);
+        if (timeToLiveSeconds > 0 && expireAfterAccess) {
+            builder.expireAfterAccess(timeToLiveSeconds, TimeUnit.SECONDS);
+        } else if (timeToLiveSeconds > 0) {
+            builder.expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS);
+        }
+        return builder.build();
+    }
+
+    private class PrincipalEntry {
+        private final ConcurrentMap<String, Boolean> pathPermissions = ExternalAclCache.this.<Boolean>newMap();
+        private final ConcurrentMap<Object, AccessManagerUtils.CompiledAcl> compiledAcls = ExternalAclCache.this.<Object, AccessManagerUtils.CompiledAcl>newCache(false).asMap();
+        private final ConcurrentMap<String, String[]> privilegesNames = ExternalAclCache.this.<String[]>newMap();
+    }
+}
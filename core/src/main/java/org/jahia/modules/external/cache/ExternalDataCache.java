@@ -0,0 +1,502 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.jahia.modules.external.ExternalData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository level cache of the {@link ExternalData} and children lists returned by an
+ * {@link org.jahia.modules.external.ExternalDataSource}, shared by all the sessions opened on the same mount point.
+ * <p>
+ * Entries are bounded in number (LRU) and in time (time to live), and are kept separately per workspace. The cached
+ * {@link ExternalData} are copied when stored and when returned, so that sessions can freely modify the instances they
+ * get. Data holding binary properties or not yet saved data are never cached.
+ * <p>
+ * Entries are also indexed by path, so that invalidating an item and its descendants does not need to scan the whole
+ * cache. Each invalidation increments a generation number: callers read it with {@link #getGeneration()} before
+ * reading the data source and pass it to the <code>put</code> methods, which then ignore the data if an invalidation
+ * happened in the meantime, as the data may have been read before the change.
+ */
+public class ExternalDataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalDataCache.class);
+
+    private final int maxEntries;
+    private final long timeToLive;
+
+    private final LruMap<ExternalData> itemsByPath;
+    private final LruMap<ExternalData> itemsByIdentifier;
+    private final LruMap<List<String>> children;
+    private long generation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the maximum number of entries kept for each kind of entry (items by path, items by identifier, children)
+     * @param timeToLiveSeconds the number of seconds an entry is kept, 0 or less means no time limit
+     */
+    public ExternalDataCache(int maxEntries, long timeToLiveSeconds) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLiveSeconds > 0 ? timeToLiveSeconds * 1000L : 0;
+        this.itemsByPath = new LruMap<>();
+        this.itemsByIdentifier = new LruMap<>();
+        this.children = new LruMap<>();
+    }
+
+    /**
+     * Returns a copy of the cached data for the specified path.
+     *
+     * @param workspaceName the workspace name
+     * @param path the item path
+     * @return a copy of the cached data or <code>null</code> if no valid entry is found
+     */
+    public ExternalData getItemByPath(String workspaceName, String path) {
+        CacheEntry<ExternalData> entry;
+        synchronized (this) {
+            entry = get(itemsByPath, getKey(workspaceName, path));
+        }
+        return entry != null ? copy(entry.value) : null;
+    }
+
+    /**
+     * Returns a copy of the cached data for the specified external identifier.
+     *
+     * @param workspaceName the workspace name
+     * @param identifier the external identifier
+     * @return a copy of the cached data or <code>null</code> if no valid entry is found
+     */
+    public ExternalData getItemByIdentifier(String workspaceName, String identifier) {
+        CacheEntry<ExternalData> entry;
+        synchronized (this) {
+            entry = get(itemsByIdentifier, getKey(workspaceName, identifier));
+        }
+        return entry != null ? copy(entry.value) : null;
+    }
+
+    /**
+     * Returns the cached children names of the specified path.
+     *
+     * @param workspaceName the workspace name
+     * @param path the parent path
+     * @return a new list with the cached children names or <code>null</code> if no valid entry is found
+     */
+    public List<String> getChildren(String workspaceName, String path) {
+        CacheEntry<List<String>> entry;
+        synchronized (this) {
+            entry = get(children, getKey(workspaceName, path));
+        }
+        return entry != null ? new ArrayList<>(entry.value) : null;
+    }
+
+    /**
+     * Returns copies of the cached data of all the children of the specified path, as they would be returned by
+     * {@link org.jahia.modules.external.ExternalDataSource.CanLoadChildrenInBatch#getChildrenNodes(String)}.
+     *
+     * @param workspaceName the workspace name
+     * @param path the parent path
+     * @return the children data or <code>null</code> if the children list or one of the children is not cached
+     */
+    public List<ExternalData> getChildrenNodes(String workspaceName, String path) {
+        List<ExternalData> result;
+        synchronized (this) {
+            CacheEntry<List<String>> childrenEntry = peek(children, getKey(workspaceName, path));
+            if (childrenEntry == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            result = new ArrayList<>(childrenEntry.value.size());
+            for (String childName : childrenEntry.value) {
+                CacheEntry<ExternalData> childEntry = peek(itemsByPath, getKey(workspaceName, getChildPath(path, childName)));
+                if (childEntry == null) {
+                    missCount.incrementAndGet();
+                    return null;
+                }
+                result.add(childEntry.value);
+            }
+            hitCount.incrementAndGet();
+        }
+        ListIterator<ExternalData> it = result.listIterator();
+        while (it.hasNext()) {
+            it.set(copy(it.next()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the current generation of the cache, to be read before reading the data source and passed to the
+     * <code>put</code> methods.
+     *
+     * @return the number of invalidations done so far
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores a copy of the specified data, indexed by path and by external identifier.
+     *
+     * @param workspaceName the workspace name
+     * @param data the data returned by the data source
+     * @param generation the generation of the cache read before reading the data source, the data is not stored if
+     *                   the cache has been invalidated since
+     */
+    public void putItem(String workspaceName, ExternalData data, long generation) {
+        if (!isCacheable(data)) {
+            return;
+        }
+        CacheEntry<ExternalData> entry = new CacheEntry<ExternalData>(copy(data), data.getPath(), getExpiration());
+        synchronized (this) {
+            if (generation != this.generation) {
+                return;
+            }
+            itemsByPath.put(getKey(workspaceName, data.getPath()), entry);
+            itemsByIdentifier.put(getKey(workspaceName, data.getId()), entry);
+        }
+    }
+
+    /**
+     * Stores a copy of the children names of the specified path.
+     *
+     * @param workspaceName the workspace name
+     * @param path the parent path
+     * @param childrenNames the children names returned by the data source
+     * @param generation the generation of the cache read before reading the data source, the list is not stored if
+     *                   the cache has been invalidated since
+     */
+    public void putChildren(String workspaceName, String path, List<String> childrenNames, long generation) {
+        CacheEntry<List<String>> entry = new CacheEntry<List<String>>(Collections.unmodifiableList(new ArrayList<>(childrenNames)), path, getExpiration());
+        synchronized (this) {
+            if (generation != this.generation) {
+                return;
+            }
+            children.put(getKey(workspaceName, path), entry);
+        }
+    }
+
+    /**
+     * Stores the children data returned by {@link org.jahia.modules.external.ExternalDataSource.CanLoadChildrenInBatch#getChildrenNodes(String)}.
+     * The children list is only stored if all the direct children can be cached.
+     *
+     * @param workspaceName the workspace name
+     * @param path the parent path
+     * @param childrenNodes the children data returned by the data source
+     * @param generation the generation of the cache read before reading the data source, the data is not stored if
+     *                   the cache has been invalidated since
+     */
+    public void putChildrenNodes(String workspaceName, String path, List<ExternalData> childrenNodes, long generation) {
+        List<String> childrenNames = new ArrayList<>(childrenNodes.size());
+        boolean complete = true;
+        for (ExternalData child : childrenNodes) {
+            putItem(workspaceName, child, generation);
+            if (path.equals(getParentPath(child.getPath()))) {
+                childrenNames.add(child.getName());
+                complete &= isCacheable(child);
+            }
+        }
+        if (complete) {
+            putChildren(workspaceName, path, childrenNames, generation);
+        }
+    }
+
+    /**
+     * Removes, in all workspaces, the entries for the item at the specified path and the children list of its parent.
+     *
+     * @param path the item path
+     * @param includeDescendants if the entries of all the descendants of the item should also be removed
+     */
+    public void invalidate(String path, boolean includeDescendants) {
+        int removed = 0;
+        synchronized (this) {
+            generation++;
+            removed += itemsByPath.removeByPath(path, includeDescendants);
+            itemsByIdentifier.removeByPath(path, includeDescendants);
+            removed += children.removeByPath(path, includeDescendants);
+            removed += children.removeByPath(getParentPath(path), false);
+        }
+        invalidationCount.addAndGet(removed);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Invalidated {} entries for {}{}", removed, path, includeDescendants ? " and its descendants" : "");
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        synchronized (this) {
+            generation++;
+            itemsByPath.clear();
+            itemsByIdentifier.clear();
+            children.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries removed because the cache was full or because their time to live was exceeded
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of entries removed by an explicit invalidation (save, move, API events)
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public synchronized int getSize() {
+        return itemsByPath.size() + itemsByIdentifier.size() + children.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTimeToLiveSeconds() {
+        return timeToLive / 1000L;
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalDataCache [size=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", invalidations=" + getInvalidationCount() + "]";
+    }
+
+    private <T> CacheEntry<T> get(Map<String, CacheEntry<T>> map, String key) {
+        CacheEntry<T> entry = peek(map, key);
+        if (entry != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private <T> CacheEntry<T> peek(Map<String, CacheEntry<T>> map, String key) {
+        CacheEntry<T> entry = map.get(key);
+        if (entry != null && entry.isExpired()) {
+            map.remove(key);
+            evictionCount.incrementAndGet();
+            return null;
+        }
+        return entry;
+    }
+
+    private long getExpiration() {
+        return timeToLive > 0 ? System.currentTimeMillis() + timeToLive : Long.MAX_VALUE;
+    }
+
+    private static String getKey(String workspaceName, String pathOrIdentifier) {
+        return workspaceName + "\n" + pathOrIdentifier;
+    }
+
+    private static String getParentPath(String path) {
+        String parentPath = StringUtils.substringBeforeLast(path, "/");
+        return parentPath.isEmpty() ? "/" : parentPath;
+    }
+
+    private static String getChildPath(String path, String childName) {
+        return path.endsWith("/") ? path + childName : path + "/" + childName;
+    }
+
+    private static boolean isCacheable(ExternalData data) {
+        return !data.isNew() && data.getId() != null && (data.getBinaryProperties() == null || data.getBinaryProperties().isEmpty());
+    }
+
+    private static ExternalData copy(ExternalData data) {
+        Map<String, String[]> properties = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : data.getProperties().entrySet()) {
+            properties.put(entry.getKey(), entry.getValue() != null ? entry.getValue().clone() : null);
+        }
+        ExternalData copy = new ExternalData(data.getId(), data.getPath(), data.getType(), properties);
+        if (data.getMixin() != null) {
+            copy.setMixin(new ArrayList<>(data.getMixin()));
+        }
+        if (data.getI18nProperties() != null) {
+            Map<String, Map<String, String[]>> i18nProperties = new HashMap<>();
+            for (Map.Entry<String, Map<String, String[]>> langEntry : data.getI18nProperties().entrySet()) {
+                Map<String, String[]> langProperties = new HashMap<>();
+                for (Map.Entry<String, String[]> entry : langEntry.getValue().entrySet()) {
+                    langProperties.put(entry.getKey(), entry.getValue() != null ? entry.getValue().clone() : null);
+                }
+                i18nProperties.put(langEntry.getKey(), langProperties);
+            }
+            copy.setI18nProperties(i18nProperties);
+        }
+        if (data.getBinaryProperties() != null) {
+            copy.setBinaryProperties(new HashMap<>(data.getBinaryProperties()));
+        }
+        if (data.getLazyProperties() != null) {
+            copy.setLazyProperties(new HashSet<>(data.getLazyProperties()));
+        }
+        if (data.getLazyBinaryProperties() != null) {
+            copy.setLazyBinaryProperties(new HashSet<>(data.getLazyBinaryProperties()));
+        }
+        if (data.getLazyI18nProperties() != null) {
+            Map<String, Set<String>> lazyI18nProperties = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : data.getLazyI18nProperties().entrySet()) {
+                lazyI18nProperties.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            }
+            copy.setLazyI18nProperties(lazyI18nProperties);
+        }
+        copy.setExternalDataAcl(data.getExternalDataAcl());
+        return copy;
+    }
+
+    private static class CacheEntry<T> {
+        private final T value;
+        private final String path;
+        private final long expiration;
+
+        CacheEntry(T value, String path, long expiration) {
+            this.value = value;
+            this.path = path;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return expiration < System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * LRU map whose keys are also indexed by the path of their entry, so that the entries of a path and of its
+     * descendants can be found without iterating over the whole map.
+     */
+    private class LruMap<T> extends LinkedHashMap<String, CacheEntry<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final NavigableSet<String> pathIndex = new TreeSet<>();
+
+        LruMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        public CacheEntry<T> put(String key, CacheEntry<T> entry) {
+            CacheEntry<T> previous = super.put(key, entry);
+            if (previous != null) {
+                pathIndex.remove(getIndexKey(previous.path, key));
+            }
+            pathIndex.add(getIndexKey(entry.path, key));
+            return previous;
+        }
+
+        @Override
+        public CacheEntry<T> remove(Object key) {
+            CacheEntry<T> previous = super.remove(key);
+            if (previous != null) {
+                pathIndex.remove(getIndexKey(previous.path, (String) key));
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            pathIndex.clear();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
+            if (size() > maxEntries) {
+                pathIndex.remove(getIndexKey(eldest.getValue().path, eldest.getKey()));
+                evictionCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Removes the entries of the specified path and optionally of its descendants.
+         *
+         * @return the number of removed entries
+         */
+        int removeByPath(String path, boolean includeDescendants) {
+            List<String> keys = getKeysByPathPrefix(path + "\n");
+            if (includeDescendants) {
+                keys.addAll(getKeysByPathPrefix(path.equals("/") ? "/" : path + "/"));
+            }
+            int removed = 0;
+            for (String key : keys) {
+                if (remove(key) != null) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        private List<String> getKeysByPathPrefix(String prefix) {
+            List<String> keys = new ArrayList<>();
+            for (String indexKey : pathIndex.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+                keys.add(StringUtils.substringAfter(indexKey, "\n"));
+            }
+            return keys;
+        }
+
+        private String getIndexKey(String path, String key) {
+            return path + "\n" + key;
+        }
+    }
+}
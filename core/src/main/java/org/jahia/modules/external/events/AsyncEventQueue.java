@@ -0,0 +1,423 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.events;
+
+import org.jahia.services.content.ApiEvent;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRStoreProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.observation.Event;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous processing of the API events. Events are queued per provider and sent by a background thread, in batches,
+ * once the coalescing window is elapsed. Within this window, an event replaces a previous event of the same type on the same
+ * path, at the position of the previous event, so that a burst of notifications for the same item triggers a single event
+ * without being reordered with the events received meanwhile.
+ * <p>
+ * When the queue is stopped, new events are refused, and the pending ones are sent before the background thread ends.
+ * <p>
+ * The metrics of the queue of each provider are exposed through JMX, see {@link AsyncEventQueueMetricsMXBean}.
+ */
+public class AsyncEventQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncEventQueue.class);
+
+    private static final String OBJECT_NAME = "org.jahia.modules.external:type=AsyncEventQueue,provider=";
+
+    /**
+     * Result of {@link #offer(List, JCRStoreProvider)}.
+     */
+    public enum OfferStatus {
+        /** the events are queued */
+        ACCEPTED,
+        /** the queue of the provider is full, none of the events is queued */
+        QUEUE_FULL,
+        /** the queue is stopped, none of the events is queued */
+        STOPPED
+    }
+
+    private boolean enabled = false;
+    private int queueCapacity = 10000;
+    private long coalescingWindow = 500;
+    private int maxBatchSize = 1000;
+    private long shutdownTimeout = 10000;
+
+    private final Map<String, ProviderQueue> queues = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+    private volatile boolean stopped = true;
+
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "External provider API events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        stopped = false;
+    }
+
+    public void stop() {
+        stopped = true;
+        // the flushes already scheduled still run, so that the pending events are sent by the background thread
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(coalescingWindow + shutdownTimeout, TimeUnit.MILLISECONDS)) {
+                logger.warn("API events still pending after {} ms, they are dropped", coalescingWindow + shutdownTimeout);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (String providerKey : queues.keySet()) {
+            unregisterMetrics(providerKey);
+        }
+        queues.clear();
+    }
+
+    /**
+     * @return true if the queue is not started yet or has been stopped, in which case events are refused
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return true if the events received by the REST API are processed asynchronously
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param queueCapacity maximum number of pending events per provider, further events are refused
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param coalescingWindow time in milliseconds during which events are collected before being sent
+     */
+    public void setCoalescingWindow(long coalescingWindow) {
+        this.coalescingWindow = coalescingWindow;
+    }
+
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    /**
+     * @param maxBatchSize maximum number of events sent at once
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param shutdownTimeout time in milliseconds, in addition to the coalescing window, given to the pending events to be
+     *                        sent when the queue is stopped
+     */
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * Queues the events for the specified provider. Either all the events are queued, or none of them if the queue of the
+     * provider would exceed its capacity.
+     *
+     * @param events   the events to send
+     * @param provider the provider on which the events occurred
+     * @return whether the events are queued, or why they are refused
+     */
+    public OfferStatus offer(List<? extends ApiEvent> events, JCRStoreProvider provider) {
+        if (stopped) {
+            return OfferStatus.STOPPED;
+        }
+        return queues.computeIfAbsent(provider.getKey(), this::createQueue).offer(events);
+    }
+
+    /**
+     * Returns the metrics of the queue of the specified provider, also exposed through JMX.
+     *
+     * @param providerKey the provider key
+     * @return the metrics, or <code>null</code> if no event has been received for the provider
+     */
+    public AsyncEventQueueMetricsMXBean getMetrics(String providerKey) {
+        return queues.get(providerKey);
+    }
+
+    private ProviderQueue createQueue(String providerKey) {
+        ProviderQueue queue = new ProviderQueue(providerKey);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(providerKey);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(queue, name);
+        } catch (JMException e) {
+            logger.warn("Cannot register the API events queue metrics of provider " + providerKey, e);
+        }
+        return queue;
+    }
+
+    private static void unregisterMetrics(String providerKey) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(providerKey);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            logger.warn("Cannot unregister the API events queue metrics of provider " + providerKey, e);
+        }
+    }
+
+    private static ObjectName getObjectName(String providerKey) throws JMException {
+        return new ObjectName(OBJECT_NAME + ObjectName.quote(providerKey));
+    }
+
+    /**
+     * Events of the same type on the same path are coalesced, except moves which are always kept.
+     */
+    private static Object getCoalescingKey(ApiEvent event) {
+        if (event.getType() == Event.NODE_MOVED) {
+            return new Object();
+        }
+        return event.getType() + ":" + event.getPath();
+    }
+
+    private class ProviderQueue implements AsyncEventQueueMetricsMXBean {
+        private final String providerKey;
+        private final LinkedHashMap<Object, ApiEvent> pending = new LinkedHashMap<>();
+        private long oldestEventTime;
+        private boolean flushScheduled;
+
+        private final AtomicLong accepted = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong failedBatches = new AtomicLong();
+        private final AtomicLong sentEvents = new AtomicLong();
+        private volatile long lastBatchSize;
+        private volatile long maxBatchSizeReached;
+        private volatile long lastLatency;
+        private volatile long maxLatency;
+
+        ProviderQueue(String providerKey) {
+            this.providerKey = providerKey;
+        }
+
+        synchronized OfferStatus offer(List<? extends ApiEvent> events) {
+            if (stopped) {
+                rejected.addAndGet(events.size());
+                return OfferStatus.STOPPED;
+            }
+            Set<Object> newKeys = new HashSet<>();
+            List<Object> keys = new ArrayList<>(events.size());
+            for (ApiEvent event : events) {
+                Object key = getCoalescingKey(event);
+                keys.add(key);
+                if (!pending.containsKey(key)) {
+                    newKeys.add(key);
+                }
+            }
+            if (pending.size() + newKeys.size() > queueCapacity) {
+                rejected.addAndGet(events.size());
+                return OfferStatus.QUEUE_FULL;
+            }
+            if (!flushScheduled) {
+                try {
+                    executor.schedule(this::flushAll, coalescingWindow, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // stopped meanwhile
+                    rejected.addAndGet(events.size());
+                    return OfferStatus.STOPPED;
+                }
+                flushScheduled = true;
+            }
+            if (pending.isEmpty()) {
+                oldestEventTime = System.currentTimeMillis();
+            }
+            for (int i = 0; i < events.size(); i++) {
+                // the latest event replaces the previous one, which keeps its place in the queue
+                if (pending.put(keys.get(i), events.get(i)) != null) {
+                    coalesced.incrementAndGet();
+                }
+            }
+            accepted.addAndGet(events.size());
+            return OfferStatus.ACCEPTED;
+        }
+
+        private void flushAll() {
+            try {
+                while (flush()) {
+                    // next batch
+                }
+            } finally {
+                JCRSessionFactory.getInstance().closeAllSessions();
+            }
+        }
+
+        /**
+         * Sends the next batch of pending events.
+         *
+         * @return true if there are more pending events
+         */
+        private boolean flush() {
+            List<ApiEvent> batch;
+            long since;
+            synchronized (this) {
+                batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+                Iterator<ApiEvent> it = pending.values().iterator();
+                while (it.hasNext() && batch.size() < maxBatchSize) {
+                    batch.add(it.next());
+                    it.remove();
+                }
+                since = oldestEventTime;
+                if (pending.isEmpty()) {
+                    flushScheduled = false;
+                }
+            }
+            if (batch.isEmpty()) {
+                return false;
+            }
+            JCRStoreProvider provider = JCRSessionFactory.getInstance().getProviders().get(providerKey);
+            if (provider == null) {
+                logger.warn("Provider {} is not available anymore, {} API events are dropped", providerKey, batch.size());
+                failedBatches.incrementAndGet();
+            } else {
+                try {
+                    EventServiceImpl.doSendEvents(batch, provider);
+                    batches.incrementAndGet();
+                    sentEvents.addAndGet(batch.size());
+                } catch (Exception e) {
+                    failedBatches.incrementAndGet();
+                    logger.error("Cannot process " + batch.size() + " API events for " + providerKey, e);
+                }
+            }
+            long latency = System.currentTimeMillis() - since;
+            lastBatchSize = batch.size();
+            maxBatchSizeReached = Math.max(maxBatchSizeReached, batch.size());
+            lastLatency = latency;
+            maxLatency = Math.max(maxLatency, latency);
+            logger.debug("Sent {} API events for {} in {} ms", batch.size(), providerKey, latency);
+            synchronized (this) {
+                return !pending.isEmpty();
+            }
+        }
+
+        @Override
+        public synchronized long getQueueDepth() {
+            return pending.size();
+        }
+
+        @Override
+        public long getAcceptedEvents() {
+            return accepted.get();
+        }
+
+        @Override
+        public long getCoalescedEvents() {
+            return coalesced.get();
+        }
+
+        @Override
+        public long getRejectedEvents() {
+            return rejected.get();
+        }
+
+        @Override
+        public long getSentEvents() {
+            return sentEvents.get();
+        }
+
+        @Override
+        public long getSentBatches() {
+            return batches.get();
+        }
+
+        @Override
+        public long getFailedBatches() {
+            return failedBatches.get();
+        }
+
+        @Override
+        public long getLastBatchSize() {
+            return lastBatchSize;
+        }
+
+        @Override
+        public long getMaxBatchSize() {
+            return maxBatchSizeReached;
+        }
+
+        @Override
+        public long getLastLatency() {
+            return lastLatency;
+        }
+
+        @Override
+        public long getMaxLatency() {
+            return maxLatency;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.events;
+
+/**
+ * JMX interface of the metrics of the asynchronous API events queue of a provider, registered under
+ * <code>org.jahia.modules.external:type=AsyncEventQueue,provider=&lt;provider key&gt;</code> once an event has been
+ * received for the provider.
+ */
+public interface AsyncEventQueueMetricsMXBean {
+
+    /**
+     * @return the number of events waiting to be sent
+     */
+    long getQueueDepth();
+
+    /**
+     * @return the number of events queued
+     */
+    long getAcceptedEvents();
+
+    /**
+     * @return the number of queued events replaced by a later event of the same type on the same path
+     */
+    long getCoalescedEvents();
+
+    /**
+     * @return the number of events refused because the queue was full or stopped
+     */
+    long getRejectedEvents();
+
+    /**
+     * @return the number of events sent
+     */
+    long getSentEvents();
+
+    /**
+     * @return the number of batches sent
+     */
+    long getSentBatches();
+
+    /**
+     * @return the number of batches which could not be sent, their events are dropped
+     */
+    long getFailedBatches();
+
+    /**
+     * @return the size of the last batch
+     */
+    long getLastBatchSize();
+
+    /**
+     * @return the size of the largest batch
+     */
+    long getMaxBatchSize();
+
+    /**
+     * @return the time in milliseconds between the reception of the oldest event of the last batch and the end of its
+     * processing
+     */
+    long getLastLatency();
+
+    /**
+     * @return the maximum latency in milliseconds of a batch
+     */
+    long getMaxLatency();
+}
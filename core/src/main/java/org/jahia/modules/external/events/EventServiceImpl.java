@@ -43,15 +43,21 @@
  */
 package org.jahia.modules.external.events;
 
+import org.apache.commons.lang.StringUtils;
 import org.jahia.api.Constants;
+import org.jahia.modules.external.ExternalContentStoreProvider;
 import org.jahia.modules.external.ExternalData;
 import org.jahia.modules.external.ExternalSessionImpl;
+import org.jahia.modules.external.acl.ExternalDataAcl;
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.cache.ExternalDataCache;
 import org.jahia.modules.external.events.model.ApiEventImpl;
 import org.jahia.services.content.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
 import java.util.stream.StreamSupport;
 
 public class EventServiceImpl implements EventService {
@@ -72,7 +78,9 @@ public class EventServiceImpl implements EventService {
     }
 
     public static void doSendEvents(Iterable<? extends ApiEvent> events, JCRStoreProvider provider) throws RepositoryException {
-        logger.info("Received API events for " + provider.getKey());
+        logger.debug("Received API events for {}", provider.getKey());
+        invalidateDataCache(events, provider);
+        invalidateAclCache(events, provider);
         JCRCallback<Object> callback = jcrSessionWrapper -> {
             for (ApiEvent apiEvent : events) {
                 logger.debug("Event {} for {}", apiEvent.getType(), apiEvent.getPath());
@@ -92,7 +100,58 @@ public class EventServiceImpl implements EventService {
         logger.debug("Processing API events for live");
         JCRObservationManager.doWorkspaceWriteCall(JCRSessionFactory.getInstance().getCurrentSystemSession(Constants.LIVE_WORKSPACE, null, null), JCRObservationManager.API, callback);
 
-        logger.info("API events processed");
+        logger.debug("API events processed");
+    }
+
+    /**
+     * Removes the entries related to the events paths from the shared data cache of the provider, if enabled.
+     */
+    private static void invalidateDataCache(Iterable<? extends ApiEvent> events, JCRStoreProvider provider) {
+        ExternalDataCache dataCache = provider instanceof ExternalContentStoreProvider ? ((ExternalContentStoreProvider) provider).getDataCache() : null;
+        if (dataCache == null) {
+            return;
+        }
+        for (ApiEvent apiEvent : events) {
+            String path = apiEvent.getPath();
+            switch (apiEvent.getType()) {
+                case Event.PROPERTY_ADDED:
+                case Event.PROPERTY_CHANGED:
+                case Event.PROPERTY_REMOVED:
+                    String nodePath = StringUtils.substringBeforeLast(path, "/");
+                    dataCache.invalidate(nodePath.isEmpty() ? "/" : nodePath, false);
+                    break;
+                case Event.NODE_ADDED:
+                    dataCache.invalidate(path, false);
+                    break;
+                default:
+                    if (apiEvent.getInfo() != null && apiEvent.getInfo().get("srcAbsPath") instanceof String) {
+                        dataCache.invalidate((String) apiEvent.getInfo().get("srcAbsPath"), true);
+                    }
+                    dataCache.invalidate(path, true);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the shared ACL cache of the provider, if enabled, when the events move a node or change an ACL, or when
+     * they include data with a different ACL than the one previously read.
+     */
+    private static void invalidateAclCache(Iterable<? extends ApiEvent> events, JCRStoreProvider provider) {
+        ExternalAclCache aclCache = provider instanceof ExternalContentStoreProvider ? ((ExternalContentStoreProvider) provider).getAclCache() : null;
+        if (aclCache == null) {
+            return;
+        }
+        for (ApiEvent apiEvent : events) {
+            if (apiEvent.getType() == Event.NODE_MOVED || StringUtils.contains(apiEvent.getPath(), "/" + ExternalDataAcl.ACL_NODE_NAME)) {
+                aclCache.invalidate();
+                return;
+            }
+            ExternalData data = apiEvent.getInfo() != null ? (ExternalData) apiEvent.getInfo().get("externalData") : null;
+            if (data != null && data.getExternalDataAcl() != null) {
+                aclCache.checkAcl(Constants.EDIT_WORKSPACE, data);
+                aclCache.checkAcl(Constants.LIVE_WORKSPACE, data);
+            }
+        }
     }
 
 }
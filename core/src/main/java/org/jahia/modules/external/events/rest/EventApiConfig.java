@@ -44,6 +44,7 @@
 package org.jahia.modules.external.events.rest;
 
 import org.apache.commons.lang.StringUtils;
+import org.jahia.modules.external.events.AsyncEventQueue;
 import org.osgi.service.cm.ManagedService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,10 +78,19 @@ public class EventApiConfig implements ManagedService {
 
     private Map<String, ApiKeyCapabilities> apiKeys = new HashMap<>();
 
+    private AsyncEventQueue asyncEventQueue;
+
     @Override
     public void updated(Dictionary<String, ?> properties) {
         apiKeys.clear();
 
+        if (asyncEventQueue != null) {
+            asyncEventQueue.setEnabled(Boolean.parseBoolean(getValue(properties, "event.api.async", "false")));
+            asyncEventQueue.setQueueCapacity(Integer.parseInt(getValue(properties, "event.api.async.queueCapacity", "10000")));
+            asyncEventQueue.setCoalescingWindow(Long.parseLong(getValue(properties, "event.api.async.coalescingWindow", "500")));
+            asyncEventQueue.setMaxBatchSize(Integer.parseInt(getValue(properties, "event.api.async.maxBatchSize", "1000")));
+        }
+
         if (properties != null) {
             Enumeration<String> keys = properties.keys();
             while (keys.hasMoreElements()) {
@@ -103,6 +113,19 @@ public class EventApiConfig implements ManagedService {
         logger.info("External Provider Events API configuration reloaded");
     }
 
+    private static String getValue(Dictionary<String, ?> properties, String key, String defaultValue) {
+        Object value = properties != null ? properties.get(key) : null;
+        return value != null && StringUtils.isNotBlank(value.toString()) ? value.toString().trim() : defaultValue;
+    }
+
+    public AsyncEventQueue getAsyncEventQueue() {
+        return asyncEventQueue;
+    }
+
+    public void setAsyncEventQueue(AsyncEventQueue asyncEventQueue) {
+        this.asyncEventQueue = asyncEventQueue;
+    }
+
     /**
      * Checks if apiKey is allowed to access provider event API
      *
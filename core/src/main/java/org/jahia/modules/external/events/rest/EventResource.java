@@ -44,6 +44,7 @@
 package org.jahia.modules.external.events.rest;
 
 import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.events.AsyncEventQueue;
 import org.jahia.modules.external.events.EventServiceImpl;
 import org.jahia.modules.external.events.model.ApiEventImpl;
 import org.jahia.modules.external.events.validation.ValidList;
@@ -92,6 +93,27 @@ public class EventResource {
             throw new WebApplicationException(Response.Status.FORBIDDEN);
         }
 
+        AsyncEventQueue asyncEventQueue = eventApiConfig.getAsyncEventQueue();
+        if (asyncEventQueue != null && asyncEventQueue.isEnabled()) {
+            switch (asyncEventQueue.offer(events, provider)) {
+                case QUEUE_FULL:
+                    return Response
+                            .status(429)
+                            .header("Retry-After", Math.max(1, asyncEventQueue.getCoalescingWindow() / 1000))
+                            .type(MediaType.TEXT_PLAIN_TYPE)
+                            .entity("Too many pending events for " + providerKey)
+                            .build();
+                case STOPPED:
+                    return Response
+                            .status(Response.Status.SERVICE_UNAVAILABLE)
+                            .type(MediaType.TEXT_PLAIN_TYPE)
+                            .entity("Events are not accepted anymore, the event queue is stopped")
+                            .build();
+                default:
+                    return Response.accepted().build();
+            }
+        }
+
         if (provider instanceof ExternalContentStoreProvider) {
             EventServiceImpl.doSendEvents(events, provider);
         }
@@ -48,16 +48,14 @@ import net.sf.ehcache.Element;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.*;
 import org.jahia.modules.external.ExternalProviderInitializerService;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.jahia.services.cache.ehcache.EhCacheProvider;
 import org.jahia.services.content.JCRStoreProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * {@inheritDoc}
@@ -66,6 +64,12 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
 
     private static final String ID_CACHE_NAME = "ExternalIdentifierMapping";
 
+    // Value stored in the ID cache for external IDs which are known to have no mapping yet
+    private static final String NOT_MAPPED = "";
+
+    // Maximum number of elements passed to an "in" clause or stored before flushing the session
+    private static final int BATCH_SIZE = 500;
+
     private static final Logger logger = LoggerFactory.getLogger(ExternalProviderInitializerServiceImpl.class);
 
     private SessionFactory hibernateSessionFactory;
@@ -80,6 +84,8 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
 
     private JCRStoreProvider extensionProvider;
 
+    private int notMappedCacheTimeToLiveSeconds = 10;
+
 
     @Override
     public void delete(List<String> externalIds, String providerKey, boolean includeDescendants)
@@ -179,44 +185,222 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
 
     @Override
     public String getInternalIdentifier(String externalId, String providerKey) throws RepositoryException {
+        Element cacheElement = getIdentifierCache().get(getCacheKey(externalId, providerKey));
+        if (cacheElement != null) {
+            String uuid = (String) cacheElement.getObjectValue();
+            return uuid.equals(NOT_MAPPED) ? null : uuid;
+        }
 
-        String cacheKey = getCacheKey(externalId, providerKey);
-        Cache idCache = getIdentifierCache();
-        Element cacheElement = idCache.get(cacheKey);
-        String uuid = cacheElement != null ? (String) cacheElement.getObjectValue() : null;
+        String uuid = null;
+        StatelessSession session = null;
+        long start = System.nanoTime();
+        try {
+            session = getHibernateSessionFactory().openStatelessSession();
+            session.beginTransaction();
+
+            // First select potentially multiple mapping objects by external ID hashcode, then find the desired one among the results.
+            List<?> results = session.createQuery("from UuidMapping where providerKey=:providerKey and externalIdHash=:idHash")
+                    .setString("providerKey", providerKey).setLong("idHash", externalId.hashCode()).setReadOnly(true).list();
+            for (Object result : results) {
+                UuidMapping uuidMapping = (UuidMapping) result;
+                if (uuidMapping.getExternalId().equals(externalId)) {
+                    uuid = uuidMapping.getInternalUuid();
+                    getIdentifierCache().put(new Element(getCacheKey(externalId, providerKey), uuid, true));
+                }
+            }
+
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            if (session != null) {
+                session.getTransaction().rollback();
+            }
+            throw new RepositoryException(e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            recordMetrics(providerKey, ExternalProviderMetrics.ID_MAPPING_READ, start);
+        }
 
         if (uuid == null) {
-            StatelessSession session = null;
-            try {
+            cacheNotMapped(externalId, providerKey);
+        }
+        return uuid;
+    }
 
-                session = getHibernateSessionFactory().openStatelessSession();
-                session.beginTransaction();
+    @Override
+    public Map<String, String> getInternalIdentifiers(Collection<String> externalIds, String providerKey) throws RepositoryException {
+        Map<String, String> uuids = new HashMap<String, String>();
+        Set<String> toRead = readCachedIdentifiers(externalIds, providerKey, uuids, true);
+        if (toRead.isEmpty()) {
+            return uuids;
+        }
 
-                // First select potentially multiple mapping objects by external ID hashcode, then find the desired one among the results.
-                List<?> results = session.createQuery("from UuidMapping where providerKey=:providerKey and externalIdHash=:idHash")
-                        .setString("providerKey", providerKey).setLong("idHash", externalId.hashCode()).setReadOnly(true).list();
-                for (Object result : results) {
-                    UuidMapping uuidMapping = (UuidMapping) result;
-                    if (uuidMapping.getExternalId().equals(externalId)) {
-                        uuid = uuidMapping.getInternalUuid();
-                        idCache.put(new Element(cacheKey, uuid, true));
+        StatelessSession session = null;
+        long start = System.nanoTime();
+        try {
+            session = getHibernateSessionFactory().openStatelessSession();
+            session.beginTransaction();
+
+            for (UuidMapping uuidMapping : readMappings(session, toRead, providerKey, true)) {
+                uuids.put(uuidMapping.getExternalId(), uuidMapping.getInternalUuid());
+                getIdentifierCache().put(new Element(getCacheKey(uuidMapping.getExternalId(), providerKey), uuidMapping.getInternalUuid(), true));
+            }
+
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            if (session != null) {
+                session.getTransaction().rollback();
+            }
+            throw new RepositoryException(e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            recordMetrics(providerKey, ExternalProviderMetrics.ID_MAPPING_READ, start);
+        }
+
+        for (String externalId : toRead) {
+            if (!uuids.containsKey(externalId)) {
+                cacheNotMapped(externalId, providerKey);
+            }
+        }
+
+        return uuids;
+    }
+
+    @Override
+    public Map<String, String> getOrCreateInternalIdentifiers(Collection<String> externalIds, String providerKey, String providerId)
+            throws RepositoryException {
+        Map<String, String> uuids = new HashMap<String, String>();
+        // IDs known as not mapped are read again in the transaction, as the mapping could have been created by another cluster node
+        Set<String> toRead = readCachedIdentifiers(externalIds, providerKey, uuids, false);
+        if (toRead.isEmpty()) {
+            return uuids;
+        }
+        // the mappings are created below, the IDs must not be seen as not mapped anymore, even if the creation fails
+        for (String externalId : toRead) {
+            invalidateCache(externalId, providerKey);
+        }
+
+        org.hibernate.Session session = null;
+        Thread currentThread = Thread.currentThread();
+        ClassLoader previousClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(this.getClass().getClassLoader());
+        Map<String, String> created = new HashMap<String, String>();
+        long start = System.nanoTime();
+        try {
+            session = getHibernateSessionFactory().openSession();
+            session.beginTransaction();
+
+            for (UuidMapping uuidMapping : readMappings(session, toRead, providerKey, true)) {
+                uuids.put(uuidMapping.getExternalId(), uuidMapping.getInternalUuid());
+            }
+            session.clear();
+
+            for (String externalId : toRead) {
+                if (!uuids.containsKey(externalId)) {
+                    UuidMapping uuidMapping = new UuidMapping();
+                    uuidMapping.setExternalId(externalId);
+                    uuidMapping.setProviderKey(providerKey);
+                    uuidMapping.setInternalUuid(providerId + "-" + StringUtils.substringAfter(UUID.randomUUID().toString(), "-"));
+                    session.save(uuidMapping);
+                    created.put(externalId, uuidMapping.getInternalUuid());
+                    if (created.size() % BATCH_SIZE == 0) {
+                        session.flush();
+                        session.clear();
                     }
                 }
+            }
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            if (session != null) {
+                session.getTransaction().rollback();
+            }
+            throw new RepositoryException("Error storing mappings for external nodes " + toRead + " [provider: " + providerKey + "]", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            currentThread.setContextClassLoader(previousClassLoader);
+            recordMetrics(providerKey, ExternalProviderMetrics.ID_MAPPING_WRITE, start);
+        }
 
-                session.getTransaction().commit();
-            } catch (Exception e) {
-                if (session != null) {
-                    session.getTransaction().rollback();
-                }
-                throw new RepositoryException(e);
-            } finally {
-                if (session != null) {
-                    session.close();
-                }
+        uuids.putAll(created);
+        for (String externalId : toRead) {
+            getIdentifierCache().put(new Element(getCacheKey(externalId, providerKey), uuids.get(externalId), true));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Resolved {} identifiers for provider {}, {} new mappings created", toRead.size(), providerKey, created.size());
+        }
+
+        return uuids;
+    }
+
+    /**
+     * Remembers that the external ID has no mapping yet, for {@link #notMappedCacheTimeToLiveSeconds} seconds.
+     */
+    private void cacheNotMapped(String externalId, String providerKey) {
+        if (notMappedCacheTimeToLiveSeconds > 0) {
+            Element element = new Element(getCacheKey(externalId, providerKey), NOT_MAPPED);
+            element.setTimeToLive(notMappedCacheTimeToLiveSeconds);
+            getIdentifierCache().put(element);
+        }
+    }
+
+    /**
+     * Fills the map with the cached internal IDs and returns the external IDs which have to be read from the database.
+     */
+    private Set<String> readCachedIdentifiers(Collection<String> externalIds, String providerKey, Map<String, String> uuids,
+                                              boolean trustNotMapped) {
+        Set<String> toRead = new LinkedHashSet<String>();
+        Cache idCache = getIdentifierCache();
+        for (String externalId : externalIds) {
+            Element cacheElement = idCache.get(getCacheKey(externalId, providerKey));
+            String uuid = cacheElement != null ? (String) cacheElement.getObjectValue() : null;
+            if (uuid == null || (uuid.equals(NOT_MAPPED) && !trustNotMapped)) {
+                toRead.add(externalId);
+            } else if (!uuid.equals(NOT_MAPPED)) {
+                uuids.put(externalId, uuid);
             }
         }
+        return toRead;
+    }
 
-        return uuid;
+    /**
+     * Records a database access in the metrics of the provider, if it is started.
+     */
+    private static void recordMetrics(String providerKey, String operation, long startNanos) {
+        ExternalProviderMetrics metrics = ExternalProviderMetrics.get(providerKey);
+        if (metrics != null) {
+            metrics.record(operation, startNanos);
+        }
+    }
+
+    /**
+     * Reads the mappings of the specified external IDs, with one query per batch of {@link #BATCH_SIZE} IDs.
+     */
+    private static List<UuidMapping> readMappings(SharedSessionContract session, Set<String> externalIds, String providerKey,
+                                                  boolean readOnly) {
+        List<UuidMapping> mappings = new ArrayList<UuidMapping>();
+        List<Integer> hashes = new ArrayList<Integer>(Math.min(externalIds.size(), BATCH_SIZE));
+        Iterator<String> it = externalIds.iterator();
+        while (it.hasNext()) {
+            hashes.add(it.next().hashCode());
+            if (hashes.size() == BATCH_SIZE || !it.hasNext()) {
+                // First select potentially multiple mapping objects by external ID hashcodes, then keep the desired ones among the results.
+                List<?> results = session.createQuery("from UuidMapping where providerKey=:providerKey and externalIdHash in (:idHashes)")
+                        .setString("providerKey", providerKey).setParameterList("idHashes", hashes).setReadOnly(readOnly).list();
+                for (Object result : results) {
+                    UuidMapping uuidMapping = (UuidMapping) result;
+                    if (externalIds.contains(uuidMapping.getExternalId())) {
+                        mappings.add(uuidMapping);
+                    }
+                }
+                hashes.clear();
+            }
+        }
+        return mappings;
     }
 
     @Override
@@ -270,6 +454,8 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
         Thread currentThread = Thread.currentThread();
         ClassLoader previousClassLoader = currentThread.getContextClassLoader();
         currentThread.setContextClassLoader(this.getClass().getClassLoader());
+        invalidateCache(externalId, providerKey);
+        long start = System.nanoTime();
         try {
             session = getHibernateSessionFactory().openSession();
             session.beginTransaction();
@@ -289,6 +475,7 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
                 session.close();
             }
             currentThread.setContextClassLoader(previousClassLoader);
+            recordMetrics(providerKey, ExternalProviderMetrics.ID_MAPPING_WRITE, start);
         }
 
         return uuidMapping.getInternalUuid();
@@ -342,31 +529,41 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
     @Override
     public void updateExternalIdentifier(String oldExternalId, String newExternalId, String providerKey,
                                          boolean includeDescendants) throws RepositoryException {
+        updateExternalIdentifiers(Collections.singletonMap(oldExternalId, newExternalId), providerKey, includeDescendants);
+    }
+
+    @Override
+    public void updateExternalIdentifiers(Map<String, String> newExternalIds, String providerKey, boolean includeDescendants)
+            throws RepositoryException {
+        if (newExternalIds.isEmpty()) {
+            return;
+        }
         Session session = null;
         try {
             List<String> invalidate = new ArrayList<String>();
             session = getHibernateSessionFactory().openSession();
             session.beginTransaction();
 
-            // First select potentially multiple mapping objects by external ID hashcode, then update only the desired one within the results.
-            List<?> results = session.createQuery("from UuidMapping where providerKey=:providerKey and externalIdHash=:idHash")
-                    .setString("providerKey", providerKey).setLong("idHash", oldExternalId.hashCode()).list();
-            for (Object result : results) {
-                UuidMapping uuidMapping = (UuidMapping) result;
-                if (uuidMapping.getExternalId().equals(oldExternalId)) {
-                    uuidMapping.setExternalId(newExternalId);
-                    invalidate.add(oldExternalId);
-                }
+            for (UuidMapping uuidMapping : readMappings(session, new HashSet<String>(newExternalIds.keySet()), providerKey, false)) {
+                String oldExternalId = uuidMapping.getExternalId();
+                String newExternalId = newExternalIds.get(oldExternalId);
+                uuidMapping.setExternalId(newExternalId);
+                invalidate.add(oldExternalId);
+                invalidate.add(newExternalId);
             }
 
             if (includeDescendants) {
                 // update descendants
-                List<?> descendants = session.createQuery("from UuidMapping where providerKey=:providerKey and externalId like :externalId")
-                        .setString("providerKey", providerKey).setString("externalId", oldExternalId + "/%").list();
-                for (Object mapping : descendants) {
-                    UuidMapping m = (UuidMapping) mapping;
-                    m.setExternalId(newExternalId + StringUtils.substringAfter(m.getExternalId(), oldExternalId));
-                    invalidate.add(m.getExternalId());
+                for (Map.Entry<String, String> entry : newExternalIds.entrySet()) {
+                    String oldExternalId = entry.getKey();
+                    List<?> descendants = session.createQuery("from UuidMapping where providerKey=:providerKey and externalId like :externalId")
+                            .setString("providerKey", providerKey).setString("externalId", oldExternalId + "/%").list();
+                    for (Object mapping : descendants) {
+                        UuidMapping m = (UuidMapping) mapping;
+                        invalidate.add(m.getExternalId());
+                        m.setExternalId(entry.getValue() + StringUtils.substringAfter(m.getExternalId(), oldExternalId));
+                        invalidate.add(m.getExternalId());
+                    }
                 }
             }
             session.getTransaction().commit();
@@ -385,6 +582,19 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
         }
     }
 
+    /**
+     * Sets for how long the fact that an external ID has no mapping yet is kept in the ID cache, 10 seconds by default. A
+     * value of 0 disables this negative caching. Mappings created on this node replace the cached entry, but a mapping created
+     * by another cluster node is only seen by the read methods once the entry has expired; the create methods always read the
+     * mappings again.
+     *
+     * @param notMappedCacheTimeToLiveSeconds
+     *            the time to live in seconds of the cache entries for not mapped external IDs
+     */
+    public void setNotMappedCacheTimeToLiveSeconds(int notMappedCacheTimeToLiveSeconds) {
+        this.notMappedCacheTimeToLiveSeconds = notMappedCacheTimeToLiveSeconds;
+    }
+
     public void setOverridableItemsForLocks(List<String> overridableItemsForLocks) {
         this.overridableItemsForLocks = overridableItemsForLocks;
     }
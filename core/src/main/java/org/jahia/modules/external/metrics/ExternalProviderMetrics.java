@@ -0,0 +1,323 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.metrics;
+
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.cache.ExternalDataCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counters and timings of the hot paths of an external provider: the calls to the
+ * {@link org.jahia.modules.external.ExternalDataSource}, the identifier mapping database accesses, the queries and the
+ * session caches. The statistics of the shared data and ACL caches of the provider are exposed along with them.
+ * <p>
+ * Recording is lock free, so that it can stay enabled in production. The metrics of a provider are registered as an
+ * MXBean while the provider is started, and can be looked up by provider key with {@link #get(String)}.
+ */
+public class ExternalProviderMetrics implements ExternalProviderMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalProviderMetrics.class);
+
+    private static final String OBJECT_NAME = "org.jahia.modules.external:type=ExternalProviderMetrics,provider=";
+
+    public static final String GET_ITEM_BY_PATH = "getItemByPath";
+    public static final String GET_ITEM_BY_IDENTIFIER = "getItemByIdentifier";
+    public static final String GET_CHILDREN = "getChildren";
+    public static final String GET_CHILDREN_NODES = "getChildrenNodes";
+    public static final String GET_LAZY_PROPERTY = "getPropertyValues";
+    public static final String GET_LAZY_PROPERTIES = "getPropertiesValues";
+    public static final String SEARCH = "search";
+    public static final String COUNT = "count";
+    public static final String SAVE_ITEM = "saveItem";
+    public static final String SAVE_CHANGES = "saveChanges";
+    public static final String REMOVE_ITEM = "removeItemByPath";
+    public static final String ORDER = "order";
+    public static final String MOVE = "move";
+    public static final String GET_PRIVILEGES_NAMES = "getPrivilegesNames";
+    public static final String GET_REFERRING_PROPERTIES = "getReferringProperties";
+    public static final String IS_AVAILABLE = "isAvailable";
+    public static final String ID_MAPPING_READ = "idMapping.read";
+    public static final String ID_MAPPING_WRITE = "idMapping.write";
+    public static final String QUERY_EXTENSION = "query.extension";
+    public static final String QUERY_READ_RESULTS = "query.readResults";
+
+    private static final ConcurrentMap<String, ExternalProviderMetrics> registeredMetrics = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final LongAdder sessionCacheChecks = new LongAdder();
+    private final LongAdder sessionCacheHits = new LongAdder();
+    private final Supplier<ExternalDataCache> dataCache;
+    private final Supplier<ExternalAclCache> aclCache;
+
+    /**
+     * Creates metrics without shared caches.
+     */
+    public ExternalProviderMetrics() {
+        this(() -> null, () -> null);
+    }
+
+    /**
+     * @param dataCache supplies the shared data cache of the provider, <code>null</code> when it is disabled or not created yet
+     * @param aclCache supplies the shared ACL cache of the provider, <code>null</code> when it is disabled or not created yet
+     */
+    public ExternalProviderMetrics(Supplier<ExternalDataCache> dataCache, Supplier<ExternalAclCache> aclCache) {
+        this.dataCache = dataCache;
+        this.aclCache = aclCache;
+    }
+
+    /**
+     * Returns the metrics of a started provider.
+     *
+     * @param providerKey the provider key
+     * @return the metrics of the provider or <code>null</code> if the provider is not started
+     */
+    public static ExternalProviderMetrics get(String providerKey) {
+        return providerKey != null ? registeredMetrics.get(providerKey) : null;
+    }
+
+    /**
+     * Registers the metrics of a provider, and exposes them through JMX.
+     *
+     * @param providerKey the provider key
+     * @param metrics the metrics of the provider
+     */
+    public static void register(String providerKey, ExternalProviderMetrics metrics) {
+        registeredMetrics.put(providerKey, metrics);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(providerKey);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            logger.warn("Cannot register the metrics of provider " + providerKey, e);
+        }
+    }
+
+    /**
+     * Removes the metrics of a provider.
+     *
+     * @param providerKey the provider key
+     */
+    public static void unregister(String providerKey) {
+        if (registeredMetrics.remove(providerKey) == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(providerKey);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            logger.warn("Cannot unregister the metrics of provider " + providerKey, e);
+        }
+    }
+
+    private static ObjectName getObjectName(String providerKey) throws JMException {
+        return new ObjectName(OBJECT_NAME + ObjectName.quote(providerKey));
+    }
+
+    /**
+     * Records a call of the specified operation.
+     *
+     * @param operation the operation name
+     * @param startNanos the value of {@link System#nanoTime()} when the call started
+     */
+    public void record(String operation, long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        Counter counter = counters.get(operation);
+        if (counter == null) {
+            counter = new Counter();
+            Counter existing = counters.putIfAbsent(operation, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        counter.count.increment();
+        counter.totalTime.add(duration);
+        counter.maxTime.accumulate(duration);
+    }
+
+    /**
+     * Records a lookup in the session caches of nodes.
+     *
+     * @param hit <code>true</code> if the node was found
+     */
+    public void recordSessionCacheCheck(boolean hit) {
+        sessionCacheChecks.increment();
+        if (hit) {
+            sessionCacheHits.increment();
+        }
+    }
+
+    /**
+     * Returns the statistics of an operation.
+     *
+     * @param operation the operation name
+     * @return the statistics, with a count of 0 if the operation was never called
+     */
+    public OperationStatistics getOperation(String operation) {
+        Counter counter = counters.get(operation);
+        return counter != null ? counter.snapshot() : new OperationStatistics(0, 0, 0);
+    }
+
+    @Override
+    public Map<String, OperationStatistics> getOperations() {
+        Map<String, OperationStatistics> operations = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            operations.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return operations;
+    }
+
+    @Override
+    public long getSessionCacheChecks() {
+        return sessionCacheChecks.sum();
+    }
+
+    @Override
+    public long getSessionCacheHits() {
+        return sessionCacheHits.sum();
+    }
+
+    @Override
+    public double getSessionCacheHitRatio() {
+        long checks = getSessionCacheChecks();
+        return checks > 0 ? (double) getSessionCacheHits() / checks : 0;
+    }
+
+    @Override
+    public long getDataCacheHits() {
+        ExternalDataCache cache = dataCache.get();
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    @Override
+    public long getDataCacheMisses() {
+        ExternalDataCache cache = dataCache.get();
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    @Override
+    public long getDataCacheEvictions() {
+        ExternalDataCache cache = dataCache.get();
+        return cache != null ? cache.getEvictionCount() : 0;
+    }
+
+    @Override
+    public long getDataCacheInvalidations() {
+        ExternalDataCache cache = dataCache.get();
+        return cache != null ? cache.getInvalidationCount() : 0;
+    }
+
+    @Override
+    public long getDataCacheSize() {
+        ExternalDataCache cache = dataCache.get();
+        return cache != null ? cache.getSize() : 0;
+    }
+
+    @Override
+    public long getAclCacheHits() {
+        ExternalAclCache cache = aclCache.get();
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    @Override
+    public long getAclCacheMisses() {
+        ExternalAclCache cache = aclCache.get();
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    @Override
+    public long getAclCacheInvalidations() {
+        ExternalAclCache cache = aclCache.get();
+        return cache != null ? cache.getInvalidationCount() : 0;
+    }
+
+    @Override
+    public long getAclCacheSize() {
+        ExternalAclCache cache = aclCache.get();
+        return cache != null ? cache.getSize() : 0;
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+        sessionCacheChecks.reset();
+        sessionCacheHits.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalProviderMetrics [operations=" + getOperations() + ", sessionCacheChecks=" + getSessionCacheChecks()
+                + ", sessionCacheHits=" + getSessionCacheHits() + "]";
+    }
+
+    private static class Counter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+        OperationStatistics snapshot() {
+            return new OperationStatistics(count.sum(), TimeUnit.NANOSECONDS.toMicros(totalTime.sum()),
+                    TimeUnit.NANOSECONDS.toMicros(maxTime.get()));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX interface of the {@link ExternalProviderMetrics}, registered for each mount point under
+ * <code>org.jahia.modules.external:type=ExternalProviderMetrics,provider=&lt;provider key&gt;</code>.
+ */
+public interface ExternalProviderMetricsMXBean {
+
+    /**
+     * @return the statistics of each timed operation (data source calls, identifier mapping, query), by operation name
+     */
+    Map<String, OperationStatistics> getOperations();
+
+    /**
+     * @return the number of nodes looked up in the session caches
+     */
+    long getSessionCacheChecks();
+
+    /**
+     * @return the number of nodes found in the session caches
+     */
+    long getSessionCacheHits();
+
+    /**
+     * @return the ratio of nodes found in the session caches, between 0 and 1
+     */
+    double getSessionCacheHitRatio();
+
+    /**
+     * @return the number of items found in the shared data cache, 0 if the cache is disabled
+     */
+    long getDataCacheHits();
+
+    /**
+     * @return the number of items looked up in the shared data cache and not found, 0 if the cache is disabled
+     */
+    long getDataCacheMisses();
+
+    /**
+     * @return the number of items evicted from the shared data cache because of its size or expiration, 0 if the cache is disabled
+     */
+    long getDataCacheEvictions();
+
+    /**
+     * @return the number of invalidations of the shared data cache, 0 if the cache is disabled
+     */
+    long getDataCacheInvalidations();
+
+    /**
+     * @return the number of items in the shared data cache, 0 if the cache is disabled
+     */
+    long getDataCacheSize();
+
+    /**
+     * @return the number of permissions found in the shared ACL cache, 0 if the cache is disabled
+     */
+    long getAclCacheHits();
+
+    /**
+     * @return the number of permissions looked up in the shared ACL cache and not found, 0 if the cache is disabled
+     */
+    long getAclCacheMisses();
+
+    /**
+     * @return the number of invalidations of the shared ACL cache, 0 if the cache is disabled
+     */
+    long getAclCacheInvalidations();
+
+    /**
+     * @return the number of principals in the shared ACL cache, 0 if the cache is disabled
+     */
+    long getAclCacheSize();
+
+    /**
+     * Resets the counters of the operations and of the session caches. The statistics of the shared caches are kept until
+     * the provider is stopped.
+     */
+    void reset();
+}
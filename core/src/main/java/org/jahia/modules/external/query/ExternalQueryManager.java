@@ -52,6 +52,7 @@ import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
 import org.apache.jackrabbit.spi.commons.query.qom.QueryObjectModelFactoryImpl;
 import org.apache.jackrabbit.spi.commons.query.qom.QueryObjectModelTree;
 import org.jahia.modules.external.*;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.jahia.services.content.nodetypes.ExtendedNodeType;
 import org.jahia.services.content.nodetypes.NodeTypeRegistry;
 import org.slf4j.Logger;
@@ -202,8 +203,11 @@ public class ExternalQueryManager implements QueryManager {
             }
             long lastItemIndex = getOffset() + getLimit();
 
+            ExternalProviderMetrics metrics = session.getRepository().getStoreProvider().getMetrics();
+
             // Check first for extensions
             if (hasExtension) {
+                long extensionStart = System.nanoTime();
                 Session extSession = session.getExtensionSession();
                 QueryManager queryManager = extSession.getWorkspace().getQueryManager();
 
@@ -256,6 +260,7 @@ public class ExternalQueryManager implements QueryManager {
                     } else {
                         count = getCount(result);
                     }
+                    metrics.record(ExternalProviderMetrics.QUERY_EXTENSION, extensionStart);
                     // As the node type is not supported by the DataSource, return the result directly
                     return buildQueryResult(results, dataSource, isCount, count);
                 } else {
@@ -314,6 +319,7 @@ public class ExternalQueryManager implements QueryManager {
                             }
                         }
                     }
+                    metrics.record(ExternalProviderMetrics.QUERY_EXTENSION, extensionStart);
                     // if the list contains all items
                     if (getLimit() == 0) {
                         return buildQueryResult(results, dataSource, isCount, count);
@@ -327,26 +333,30 @@ public class ExternalQueryManager implements QueryManager {
             ExternalContentStoreProvider.setCurrentSession(session);
             try {
                 if (isCount && dataSource instanceof ExternalDataSource.SupportCount) {
-                     count += ((ExternalDataSource.SupportCount) dataSource).count(this);
+                    long start = System.nanoTime();
+                    try {
+                        count += ((ExternalDataSource.SupportCount) dataSource).count(this);
+                    } finally {
+                        metrics.record(ExternalProviderMetrics.COUNT, start);
+                    }
                 } else if (!isCount) {
+                    // Provider's results are read lazily, when the query result is iterated
+                    long start = System.nanoTime();
+                    ExternalSearchCursor cursor;
+                    try {
+                        cursor = search(dataSource, session.getRepository().getStoreProvider().getQueryFetchSize());
+                    } finally {
+                        metrics.record(ExternalProviderMetrics.SEARCH, start);
+                    }
                     if (results == null) {
                         // No previous results, no merge to do
-                        results = ((ExternalDataSource.Searchable) dataSource).search(this);
+                        return new ExternalQueryResult(this, Collections.<String>emptyList(), cursor, false, -1, workspace);
                     } else if (noConstraints) {
                         // Previous results, but only in extended nodes, no merge required - concat only
-                        results.addAll(((ExternalDataSource.Searchable) dataSource).search(this));
+                        return new ExternalQueryResult(this, results, cursor, false, -1, workspace);
                     } else {
-                        List<String> providerResult = ((ExternalDataSource.Searchable) dataSource).search(this);
-                        for (String s : providerResult) {
-                            // Skip duplicate result
-                            if (!results.contains(s)) {
-                                results.add(s);
-                                // if results size match the original limit, return them ..
-                                if (originalLimit > -1 && results.size() >= originalLimit) {
-                                    break;
-                                }
-                            }
-                        }
+                        // Skip duplicate results, and return at most the original limit
+                        return new ExternalQueryResult(this, results, cursor, true, originalLimit, workspace);
                     }
                 }
             } catch (UnsupportedRepositoryOperationException e) {
@@ -358,6 +368,13 @@ public class ExternalQueryManager implements QueryManager {
             return buildQueryResult(results, dataSource, isCount, count);
         }
 
+        private ExternalSearchCursor search(ExternalDataSource dataSource, int fetchSize) throws RepositoryException {
+            if (dataSource instanceof ExternalDataSource.SearchableWithCursor) {
+                return ((ExternalDataSource.SearchableWithCursor) dataSource).search(this, fetchSize);
+            }
+            return new ListSearchCursor(((ExternalDataSource.Searchable) dataSource).search(this));
+        }
+
         private boolean isNoConstraints() throws RepositoryException {
             boolean noConstraints = false;
             try {
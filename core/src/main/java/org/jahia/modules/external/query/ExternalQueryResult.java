@@ -43,9 +43,15 @@
  */
 package org.jahia.modules.external.query;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import javax.jcr.*;
 import javax.jcr.query.QueryResult;
@@ -56,12 +62,20 @@ import javax.jcr.query.qom.QueryObjectModel;
 import javax.jcr.query.qom.Selector;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalSearchCursor;
+import org.jahia.modules.external.ExternalSearchResult;
+import org.jahia.modules.external.ExternalSessionImpl;
 import org.jahia.modules.external.ExternalWorkspaceImpl;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * An implementation of the query result, returned by the external provider search.
+ * The results of the data source are read from the search cursor by pages, only when the result is iterated. Skipped results
+ * are not loaded.
  *
  * @author Sergiy Shyrkov
  */
@@ -75,6 +89,20 @@ class ExternalQueryResult implements QueryResult {
 
     private List<String> results;
 
+    private ExternalSearchCursor cursor;
+
+    private long readFromCursor;
+
+    private Set<String> readPaths;
+
+    private long limit = -1;
+
+    private Map<String, ExternalData> dataByPath = new HashMap<String, ExternalData>();
+
+    private Set<String> unreadablePaths = new HashSet<String>();
+
+    private int pageSize;
+
     private String[] selectors;
 
     private ExternalWorkspaceImpl workspace;
@@ -90,10 +118,42 @@ class ExternalQueryResult implements QueryResult {
      *            the current provider workspace
      */
     ExternalQueryResult(QueryObjectModel qom, List<String> results, ExternalWorkspaceImpl workspace) {
+        this(qom, results, null, false, -1, workspace);
+    }
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param qom
+     *            the query object modules used for the search
+     * @param results
+     *            the first results, before the ones of the cursor
+     * @param cursor
+     *            the cursor over the results of the data source, or <code>null</code>
+     * @param skipDuplicates
+     *            if results of the cursor which are already in the results must be skipped
+     * @param limit
+     *            the maximum number of results, or -1
+     * @param workspace
+     *            the current provider workspace
+     */
+    ExternalQueryResult(QueryObjectModel qom, List<String> results, ExternalSearchCursor cursor, boolean skipDuplicates, long limit,
+                        ExternalWorkspaceImpl workspace) {
         super();
         this.qom = qom;
-        this.results = results;
         this.workspace = workspace;
+        this.pageSize = Math.max(1, workspace.getSession().getRepository().getStoreProvider().getQueryFetchSize());
+        if (cursor == null) {
+            this.results = results;
+        } else {
+            this.results = new ArrayList<String>(results);
+            this.cursor = cursor;
+            this.limit = limit;
+            if (skipDuplicates) {
+                readPaths = new HashSet<String>(results);
+            }
+            workspace.getSession().registerSearchCursor(cursor);
+        }
     }
 
     @Override
@@ -117,14 +177,103 @@ class ExternalQueryResult implements QueryResult {
 
     @Override
     public NodeIterator getNodes() throws RepositoryException {
-        final Iterator<String> it = results.iterator();
-        return new ExternalQueryNodeIterator(it);
+        return new ExternalQueryNodeIterator();
     }
 
     @Override
     public RowIterator getRows() throws RepositoryException {
-        final Iterator<String> it = results.iterator();
-        return new ExternalQueryRowIterator(it);
+        return new ExternalQueryRowIterator();
+    }
+
+    /**
+     * Reads the results from the cursor until the result at the specified index is available, or there are no more results.
+     *
+     * @param index the index of the result to read
+     * @return true if the result at this index exists
+     */
+    private boolean fetch(int index) {
+        if (results.size() > index || cursor == null) {
+            return results.size() > index;
+        }
+        ExternalSessionImpl session = workspace.getSession();
+        ExternalContentStoreProvider.setCurrentSession(session);
+        long start = System.nanoTime();
+        try {
+            while (results.size() <= index && cursor != null) {
+                if ((limit > -1 && results.size() >= limit) || !cursor.hasNext()) {
+                    closeCursor();
+                    break;
+                }
+                ExternalSearchResult result = cursor.next();
+                readFromCursor++;
+                if (readPaths == null || readPaths.add(result.getPath())) {
+                    results.add(result.getPath());
+                    if (result.getData() != null) {
+                        dataByPath.put(result.getPath(), result.getData());
+                    }
+                }
+            }
+        } catch (RepositoryException e) {
+            logger.error("Cannot read query results", e);
+            closeCursor();
+        } finally {
+            session.getRepository().getStoreProvider().getMetrics().record(ExternalProviderMetrics.QUERY_READ_RESULTS, start);
+            ExternalContentStoreProvider.removeCurrentSession();
+        }
+        return results.size() > index;
+    }
+
+    private void closeCursor() {
+        cursor.close();
+        workspace.getSession().unregisterSearchCursor(cursor);
+        cursor = null;
+        readPaths = null;
+    }
+
+    private long getSize() {
+        if (cursor != null && readPaths == null && cursor.getSize() > -1) {
+            // No duplicate to skip, the size is given by the cursor
+            long size = results.size() - readFromCursor + cursor.getSize();
+            return limit > -1 ? Math.min(size, limit) : size;
+        }
+        fetch(Integer.MAX_VALUE - 1);
+        return results.size();
+    }
+
+    /**
+     * Loads the nodes of the next page of results in the session, so that their identifiers are resolved at once.
+     *
+     * @param from the index of the first result of the page
+     * @return the index following the last preloaded result
+     */
+    private int preload(int from) {
+        fetch(from + pageSize - 1);
+        int to = Math.min(from + pageSize, results.size());
+        if (from >= to) {
+            return to;
+        }
+        List<String> paths = results.subList(from, to);
+        Map<String, ExternalData> data = Collections.emptyMap();
+        if (!dataByPath.isEmpty()) {
+            data = new HashMap<String, ExternalData>();
+            for (String path : paths) {
+                if (dataByPath.containsKey(path)) {
+                    data.put(path, dataByPath.remove(path));
+                }
+            }
+        }
+        try {
+            // check the read permission of the whole page at once, and only load the readable nodes
+            List<String> readablePaths = workspace.getSession().getAccessControlManager().checkRead(paths);
+            if (readablePaths.size() < paths.size()) {
+                unreadablePaths.addAll(paths);
+                unreadablePaths.removeAll(readablePaths);
+            }
+            workspace.getSession().preloadNodes(readablePaths, data);
+        } catch (RepositoryException e) {
+            logger.debug("Cannot preload query results", e);
+        }
+        return to;
     }
 
     @Override
@@ -140,82 +289,74 @@ class ExternalQueryResult implements QueryResult {
         return selectors;
     }
 
-    private class ExternalQueryNodeIterator implements NodeIterator {
-        private final Iterator<String> it;
-        private int pos;
-
-        public ExternalQueryNodeIterator(Iterator<String> it) {
-            this.it = it;
-            pos = 0;
-        }
+    /**
+     * Base iterator over the result paths, resolving the nodes only when they are returned.
+     */
+    private abstract class ExternalQueryIterator {
+        private int pos = 0;
+        private int preloadedUntil = 0;
 
-        @Override
         public long getPosition() {
             return pos;
         }
 
-        @Override
         public long getSize() {
-            return results.size();
+            return ExternalQueryResult.this.getSize();
         }
 
-        @Override
         public boolean hasNext() {
-            return it.hasNext();
-        }
-
-        @Override
-        public Object next() {
-            return nextNode();
+            return fetch(pos);
         }
 
-        @Override
-        public Node nextNode() {
+        protected Node nextResultNode() {
+            if (!fetch(pos)) {
+                throw new NoSuchElementException();
+            }
+            if (pos >= preloadedUntil) {
+                preloadedUntil = preload(pos);
+            }
+            String path = results.get(pos++);
+            if (unreadablePaths.remove(path)) {
+                return null;
+            }
             try {
-                return workspace.getSession().getNode(it.next());
+                return workspace.getSession().getNode(path);
             } catch (RepositoryException e) {
                 logger.error(e.getMessage(), e);
                 return null;
             }
         }
 
-        @Override
         public void remove() {
             throw new UnsupportedOperationException();
         }
 
         public void skip(long skipNum) {
-            for (int i = 0; i < skipNum; i++) {
-                it.next();
+            if (skipNum > 0 && !fetch(pos + (int) skipNum - 1)) {
+                throw new NoSuchElementException();
+            }
+            if (!dataByPath.isEmpty()) {
+                for (String path : results.subList(pos, pos + (int) skipNum)) {
+                    dataByPath.remove(path);
+                }
             }
             pos += skipNum;
         }
     }
 
-    private class ExternalQueryRowIterator implements RowIterator {
-        private final Iterator<String> it;
-        private int pos;
-
-        public ExternalQueryRowIterator(Iterator<String> it) {
-            this.it = it;
-            pos = 0;
-        }
-
-        @Override
-        public long getPosition() {
-            return pos;
-        }
-
+    private class ExternalQueryNodeIterator extends ExternalQueryIterator implements NodeIterator {
         @Override
-        public long getSize() {
-            return results.size();
+        public Object next() {
+            return nextNode();
         }
 
         @Override
-        public boolean hasNext() {
-            return it.hasNext();
+        public Node nextNode() {
+            return nextResultNode();
         }
+    }
 
+    private class ExternalQueryRowIterator extends ExternalQueryIterator implements RowIterator {
         @Override
         public Object next() {
             return nextRow();
@@ -223,25 +364,8 @@ class ExternalQueryResult implements QueryResult {
 
         @Override
         public Row nextRow() {
-            try {
-                final Node n = workspace.getSession().getNode(it.next());
-                return new ExternalQueryRow(n);
-            } catch (RepositoryException e) {
-                logger.error(e.getMessage(), e);
-                return null;
-            }
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        public void skip(long skipNum) {
-            for (int i = 0; i < skipNum; i++) {
-                it.next();
-            }
-            pos += skipNum;
+            final Node n = nextResultNode();
+            return n != null ? new ExternalQueryRow(n) : null;
         }
 
         private class ExternalQueryRow implements Row {
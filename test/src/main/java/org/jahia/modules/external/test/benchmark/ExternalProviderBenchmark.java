@@ -0,0 +1,190 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.benchmark;
+
+import org.jahia.api.Constants;
+import org.jahia.services.content.JCRNodeWrapper;
+import org.jahia.services.content.JCRTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the external provider through JCR sessions on the database mounts of this module, each scenario
+ * comparing a data source which works item by item with one using the batch methods: lazy property reads, queries
+ * merged with extensions, and bulk saves.
+ * <p>
+ * The scenarios need the mounted providers, so they run inside Jahia, in the JVM of {@link ExternalProviderBenchmarkTest}.
+ * Each invocation uses a new session, so that the nodes are read from the data source and not from the session caches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(0)
+public class ExternalProviderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LazyPropertiesState {
+
+        @Param({"/external-database-mapped", "/external-database-mapped-batch-lazy-properties"})
+        public String mountPoint;
+    }
+
+    @State(Scope.Benchmark)
+    public static class QueryState {
+
+        @Param({"/external-database-mapped", "/external-database-mapped-search-cursor"})
+        public String mountPoint;
+
+        @Param({"20"})
+        public int extensions;
+
+        /**
+         * Adds airlines stored as extensions, and extends an airline of the data source, so that the query results are
+         * merged from both sides and deduplicated.
+         */
+        @Setup(Level.Trial)
+        public void addExtensions() throws RepositoryException {
+            JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+                JCRNodeWrapper airlines = session.getNode(mountPoint + "/AIRLINES");
+                for (int i = 0; i < extensions; i++) {
+                    airlines.addNode("extension" + i, "jtestnt:airline");
+                }
+                airlines.getNode("AA").setProperty("basic_rate", 0);
+                session.save();
+                return null;
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void removeExtensions() throws RepositoryException {
+            JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+                Session jcrSession = session.getNode("/").getRealNode().getSession();
+                if (jcrSession.nodeExists(mountPoint)) {
+                    jcrSession.getNode(mountPoint).remove();
+                }
+                Node rootNode = jcrSession.getNode("/");
+                if (rootNode.isNodeType("jmix:hasExternalProviderExtension")) {
+                    rootNode.removeMixin("jmix:hasExternalProviderExtension");
+                }
+                jcrSession.save();
+                return null;
+            });
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SaveState {
+
+        @Param({"/external-writeable-database-mapped", "/external-writeable-database-mapped-batch"})
+        public String mountPoint;
+
+        /**
+         * Number of airlines added then removed by each save, at most 26 as their codes have two letters.
+         */
+        @Param({"20"})
+        public int nodes;
+    }
+
+    /**
+     * Reads a lazy property and a lazy i18n property of each city.
+     */
+    @Benchmark
+    public void lazyPropertyReads(final LazyPropertiesState state, final Blackhole blackhole) throws RepositoryException {
+        JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+            for (JCRNodeWrapper city : session.getNode(state.mountPoint + "/CITIES").getNodes()) {
+                blackhole.consume(city.getProperty("airport").getString());
+                blackhole.consume(city.getProperty("city_name").getString());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs a query returning the airlines of the data source and the ones stored as extensions, and reads the nodes.
+     */
+    @Benchmark
+    public void queryWithExtensions(final QueryState state, final Blackhole blackhole) throws RepositoryException {
+        JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+            Query query = session.getWorkspace().getQueryManager().createQuery("select * from [jtestnt:airline] where isdescendantnode('"
+                    + state.mountPoint + "')", Query.JCR_SQL2);
+            for (NodeIterator it = query.execute().getNodes(); it.hasNext(); ) {
+                blackhole.consume(it.nextNode().getPath());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Adds airlines and saves them at once, then removes them and saves again.
+     */
+    @Benchmark
+    public void bulkSave(final SaveState state) throws RepositoryException {
+        JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+            JCRNodeWrapper airlines = session.getNode(state.mountPoint + "/AIRLINES");
+            for (int i = 0; i < state.nodes; i++) {
+                String code = "Q" + (char) ('A' + i);
+                JCRNodeWrapper airline = airlines.addNode(code, "jtestnt:airline");
+                airline.setProperty("airline", code);
+                airline.setProperty("airline_full", "benchmark airline " + code);
+                airline.setProperty("basic_rate", "0.15");
+                airline.setProperty("distance_discount", "0.01");
+            }
+            session.save();
+            for (int i = 0; i < state.nodes; i++) {
+                airlines.getNode("Q" + (char) ('A' + i)).remove();
+            }
+            session.save();
+            return null;
+        });
+    }
+}
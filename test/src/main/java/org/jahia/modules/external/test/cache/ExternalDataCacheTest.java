@@ -0,0 +1,210 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.cache;
+
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.cache.ExternalDataCache;
+import org.jahia.test.JahiaTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the shared {@link ExternalDataCache}: hits, copies and invalidation.
+ */
+public class ExternalDataCacheTest extends JahiaTestCase {
+
+    private static final String WORKSPACE = "default";
+
+    private ExternalDataCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ExternalDataCache(100, 0);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        assertNull(cache.getItemByPath(WORKSPACE, "/a"));
+        assertEquals(1, cache.getMissCount());
+
+        cache.putItem(WORKSPACE, newData("a-id", "/a"), cache.getGeneration());
+        assertEquals("/a", cache.getItemByPath(WORKSPACE, "/a").getPath());
+        assertEquals("/a", cache.getItemByIdentifier(WORKSPACE, "a-id").getPath());
+        assertNull(cache.getItemByPath("live", "/a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testCopyOnReadAndWrite() {
+        ExternalData data = newData("a-id", "/a");
+        cache.putItem(WORKSPACE, data, cache.getGeneration());
+        data.getProperties().get("title")[0] = "modified before read";
+
+        ExternalData read = cache.getItemByPath(WORKSPACE, "/a");
+        assertEquals("title", read.getProperties().get("title")[0]);
+        read.getProperties().get("title")[0] = "modified after read";
+        read.getProperties().put("other", new String[]{"other"});
+
+        ExternalData readAgain = cache.getItemByPath(WORKSPACE, "/a");
+        assertNotSame(read, readAgain);
+        assertEquals("title", readAgain.getProperties().get("title")[0]);
+        assertFalse(readAgain.getProperties().containsKey("other"));
+
+        cache.putChildren(WORKSPACE, "/", Arrays.asList("a"), cache.getGeneration());
+        cache.getChildren(WORKSPACE, "/").add("b");
+        assertEquals(Collections.singletonList("a"), cache.getChildren(WORKSPACE, "/"));
+    }
+
+    @Test
+    public void testNotCacheable() {
+        ExternalData data = new ExternalData("a-id", "/a", "jnt:contentFolder", new HashMap<String, String[]>(), true);
+        cache.putItem(WORKSPACE, data, cache.getGeneration());
+        assertNull(cache.getItemByPath(WORKSPACE, "/a"));
+    }
+
+    @Test
+    public void testChildrenNodes() {
+        long generation = cache.getGeneration();
+        cache.putChildrenNodes(WORKSPACE, "/", Arrays.asList(newData("a-id", "/a"), newData("b-id", "/b")), generation);
+        List<ExternalData> children = cache.getChildrenNodes(WORKSPACE, "/");
+        assertEquals(2, children.size());
+        assertEquals("/a", children.get(0).getPath());
+        assertEquals(Arrays.asList("a", "b"), cache.getChildren(WORKSPACE, "/"));
+
+        cache.invalidate("/b", false);
+        assertNull(cache.getChildrenNodes(WORKSPACE, "/"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        long generation = cache.getGeneration();
+        for (String workspace : Arrays.asList(WORKSPACE, "live")) {
+            cache.putItem(workspace, newData("a-id", "/a"), generation);
+            cache.putItem(workspace, newData("ab-id", "/a/b"), generation);
+            cache.putItem(workspace, newData("abc-id", "/a/b/c"), generation);
+            cache.putItem(workspace, newData("ab2-id", "/a/b2"), generation);
+            cache.putItem(workspace, newData("ab-sibling-id", "/a/b-sibling"), generation);
+            cache.putChildren(workspace, "/a", Arrays.asList("b", "b2", "b-sibling"), generation);
+            cache.putChildren(workspace, "/a/b", Arrays.asList("c"), generation);
+            cache.putChildren(workspace, "/a/b/c", Collections.<String>emptyList(), generation);
+        }
+
+        cache.invalidate("/a/b", false);
+        for (String workspace : Arrays.asList(WORKSPACE, "live")) {
+            assertNull(cache.getItemByPath(workspace, "/a/b"));
+            assertNull(cache.getItemByIdentifier(workspace, "ab-id"));
+            assertNull(cache.getChildren(workspace, "/a/b"));
+            assertNull(cache.getChildren(workspace, "/a"));
+            assertNotNull(cache.getItemByPath(workspace, "/a/b/c"));
+            assertNotNull(cache.getChildren(workspace, "/a/b/c"));
+            assertNotNull(cache.getItemByPath(workspace, "/a"));
+        }
+
+        cache.invalidate("/a", true);
+        for (String workspace : Arrays.asList(WORKSPACE, "live")) {
+            assertNull(cache.getItemByPath(workspace, "/a"));
+            assertNull(cache.getItemByPath(workspace, "/a/b/c"));
+            assertNull(cache.getItemByIdentifier(workspace, "abc-id"));
+            assertNull(cache.getItemByPath(workspace, "/a/b2"));
+            assertNull(cache.getItemByPath(workspace, "/a/b-sibling"));
+            assertNull(cache.getChildren(workspace, "/a/b/c"));
+        }
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidateSiblingWithSamePrefix() {
+        long generation = cache.getGeneration();
+        cache.putItem(WORKSPACE, newData("a-id", "/a"), generation);
+        cache.putItem(WORKSPACE, newData("ab-id", "/ab"), generation);
+        cache.putItem(WORKSPACE, newData("ab-child-id", "/ab/c"), generation);
+
+        cache.invalidate("/a", true);
+        assertNull(cache.getItemByPath(WORKSPACE, "/a"));
+        assertNotNull(cache.getItemByPath(WORKSPACE, "/ab"));
+        assertNotNull(cache.getItemByPath(WORKSPACE, "/ab/c"));
+    }
+
+    @Test
+    public void testStaleReadIsNotStored() {
+        long generation = cache.getGeneration();
+        // the data source is read, then the item is changed and invalidated before the read data is stored
+        ExternalData staleData = newData("a-id", "/a");
+        cache.invalidate("/a", false);
+        cache.putItem(WORKSPACE, staleData, generation);
+        cache.putChildren(WORKSPACE, "/", Arrays.asList("a"), generation);
+        assertNull(cache.getItemByPath(WORKSPACE, "/a"));
+        assertNull(cache.getChildren(WORKSPACE, "/"));
+
+        cache.putItem(WORKSPACE, staleData, cache.getGeneration());
+        assertNotNull(cache.getItemByPath(WORKSPACE, "/a"));
+    }
+
+    @Test
+    public void testEviction() {
+        ExternalDataCache smallCache = new ExternalDataCache(2, 0);
+        long generation = smallCache.getGeneration();
+        smallCache.putItem(WORKSPACE, newData("a-id", "/a"), generation);
+        smallCache.putItem(WORKSPACE, newData("b-id", "/b"), generation);
+        smallCache.putItem(WORKSPACE, newData("c-id", "/c"), generation);
+        assertNull(smallCache.getItemByPath(WORKSPACE, "/a"));
+        assertNotNull(smallCache.getItemByPath(WORKSPACE, "/c"));
+        assertTrue(smallCache.getEvictionCount() > 0);
+
+        // evicted entries are also removed from the path index
+        smallCache.invalidate("/", true);
+        assertEquals(0, smallCache.getSize());
+    }
+
+    private static ExternalData newData(String id, String path) {
+        Map<String, String[]> properties = new HashMap<>();
+        properties.put("title", new String[]{"title"});
+        return new ExternalData(id, path, "jnt:contentFolder", properties);
+    }
+}
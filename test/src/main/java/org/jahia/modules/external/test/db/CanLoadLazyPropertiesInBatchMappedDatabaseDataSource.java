@@ -0,0 +1,208 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jcr.Binary;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+
+import org.jahia.modules.external.ExternalBinaryImpl;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+
+/**
+ * Mapped database data source loading the lazy properties of several nodes in one call. Cities also get a lazy binary
+ * property holding their airport code, and the calls to the lazy property methods are counted.
+ */
+public class CanLoadLazyPropertiesInBatchMappedDatabaseDataSource extends MappedDatabaseDataSource implements ExternalDataSource.CanLoadLazyPropertiesInBatch {
+
+    static final String AIRPORT_CODE_MIXIN = "jtestmix:airportCode";
+
+    static final String AIRPORT_CODE_PROPERTY = "airport_code";
+
+    private final AtomicInteger propertyValuesCalls = new AtomicInteger();
+
+    private final AtomicInteger propertiesValuesCalls = new AtomicInteger();
+
+    private final AtomicInteger i18nPropertiesValuesCalls = new AtomicInteger();
+
+    private final AtomicInteger binaryPropertyValuesCalls = new AtomicInteger();
+
+    private final AtomicInteger binaryPropertiesValuesCalls = new AtomicInteger();
+
+    @Override
+    protected ExternalData getRowProperties(String path, String type, String table, ResultSet rs) throws SQLException,
+            PathNotFoundException {
+        ExternalData data = super.getRowProperties(path, type, table, rs);
+        if (DATA_TYPE_CITY.equals(data.getType())) {
+            data.setMixin(Collections.singletonList(AIRPORT_CODE_MIXIN));
+            data.setLazyBinaryProperties(Collections.singleton(AIRPORT_CODE_PROPERTY));
+        }
+        return data;
+    }
+
+    @Override
+    public String[] getPropertyValues(String path, String propertyName) throws PathNotFoundException {
+        propertyValuesCalls.incrementAndGet();
+        return super.getPropertyValues(path, propertyName);
+    }
+
+    @Override
+    public String[] getI18nPropertyValues(String path, String lang, String propertyName) throws PathNotFoundException {
+        propertyValuesCalls.incrementAndGet();
+        return super.getPropertyValues(path, propertyName + "__" + lang);
+    }
+
+    @Override
+    public Binary[] getBinaryPropertyValues(String path, String propertyName) throws PathNotFoundException {
+        binaryPropertyValuesCalls.incrementAndGet();
+        return readBinaryPropertyValues(path, propertyName);
+    }
+
+    @Override
+    public Map<String, Map<String, String[]>> getPropertiesValues(Collection<String> paths, Collection<String> propertyNames) throws RepositoryException {
+        propertiesValuesCalls.incrementAndGet();
+        Map<String, Map<String, String[]>> values = new LinkedHashMap<String, Map<String, String[]>>();
+        for (String path : paths) {
+            Map<String, String[]> nodeValues = new LinkedHashMap<String, String[]>();
+            for (String propertyName : propertyNames) {
+                try {
+                    nodeValues.put(propertyName, super.getPropertyValues(path, propertyName));
+                } catch (PathNotFoundException e) {
+                    // leave the property lazy
+                }
+            }
+            values.put(path, nodeValues);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Map<String, String[]>> getI18nPropertiesValues(Collection<String> paths, String lang, Collection<String> propertyNames) throws RepositoryException {
+        i18nPropertiesValuesCalls.incrementAndGet();
+        Map<String, Map<String, String[]>> values = new LinkedHashMap<String, Map<String, String[]>>();
+        for (String path : paths) {
+            Map<String, String[]> nodeValues = new LinkedHashMap<String, String[]>();
+            for (String propertyName : propertyNames) {
+                try {
+                    nodeValues.put(propertyName, super.getPropertyValues(path, propertyName + "__" + lang));
+                } catch (PathNotFoundException e) {
+                    // leave the property lazy
+                }
+            }
+            values.put(path, nodeValues);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Map<String, Binary[]>> getBinaryPropertiesValues(Collection<String> paths, Collection<String> propertyNames) throws RepositoryException {
+        binaryPropertiesValuesCalls.incrementAndGet();
+        Map<String, Map<String, Binary[]>> values = new LinkedHashMap<String, Map<String, Binary[]>>();
+        for (String path : paths) {
+            Map<String, Binary[]> nodeValues = new LinkedHashMap<String, Binary[]>();
+            for (String propertyName : propertyNames) {
+                try {
+                    nodeValues.put(propertyName, readBinaryPropertyValues(path, propertyName));
+                } catch (PathNotFoundException e) {
+                    // leave the property lazy
+                }
+            }
+            values.put(path, nodeValues);
+        }
+        return values;
+    }
+
+    private Binary[] readBinaryPropertyValues(String path, String propertyName) throws PathNotFoundException {
+        if (!AIRPORT_CODE_PROPERTY.equals(propertyName)) {
+            return super.getBinaryPropertyValues(path, propertyName);
+        }
+        try {
+            byte[] bytes = super.getPropertyValues(path, "airport")[0].getBytes("UTF-8");
+            return new Binary[]{new ExternalBinaryImpl(new ByteArrayInputStream(bytes), bytes.length)};
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the number of calls to the single node lazy property methods, i18n properties included
+     */
+    public int getPropertyValuesCalls() {
+        return propertyValuesCalls.get();
+    }
+
+    public int getPropertiesValuesCalls() {
+        return propertiesValuesCalls.get();
+    }
+
+    public int getI18nPropertiesValuesCalls() {
+        return i18nPropertiesValuesCalls.get();
+    }
+
+    public int getBinaryPropertyValuesCalls() {
+        return binaryPropertyValuesCalls.get();
+    }
+
+    public int getBinaryPropertiesValuesCalls() {
+        return binaryPropertiesValuesCalls.get();
+    }
+
+    public void resetCalls() {
+        propertyValuesCalls.set(0);
+        propertiesValuesCalls.set(0);
+        i18nPropertiesValuesCalls.set(0);
+        binaryPropertyValuesCalls.set(0);
+        binaryPropertiesValuesCalls.set(0);
+    }
+}
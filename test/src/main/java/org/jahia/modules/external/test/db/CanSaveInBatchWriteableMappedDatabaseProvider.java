@@ -0,0 +1,164 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
+
+import org.apache.jackrabbit.core.util.db.DbUtility;
+import org.jahia.modules.external.ExternalChangeSet;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writable mapped database data source, writing all the changes of a session save in one JDBC batch and transaction.
+ * The calls to the save methods are counted, and the saves can be made to fail before the transaction is committed.
+ */
+public class CanSaveInBatchWriteableMappedDatabaseProvider extends WriteableMappedDatabaseProvider implements ExternalDataSource.CanSaveInBatch {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanSaveInBatchWriteableMappedDatabaseProvider.class);
+
+    private final AtomicInteger saveChangesCalls = new AtomicInteger();
+
+    private final AtomicInteger saveItemCalls = new AtomicInteger();
+
+    private volatile boolean failingSaves;
+
+    @Override
+    public void saveChanges(ExternalChangeSet changes) throws RepositoryException {
+        saveChangesCalls.incrementAndGet();
+        List<ExternalData> inserted = new ArrayList<ExternalData>();
+        Connection conn = null;
+        Statement stmt = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            stmt = conn.createStatement();
+            for (ExternalData data : changes.getSavedItems()) {
+                String type = getNodeTypeName(data.getPath());
+                if (type.equals(getSchemaNodeType()) || type.equals(getTableNodeType())) {
+                    throw new UnsupportedRepositoryOperationException();
+                }
+                if (data.isNew()) {
+                    stmt.addBatch(getInsertQuery(data.getPath(), data));
+                    inserted.add(data);
+                } else {
+                    stmt.addBatch(getUpdateQuery(data.getPath(), data, conn));
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : changes.getOrderedChildren().entrySet()) {
+                order(entry.getKey(), entry.getValue(), conn);
+            }
+            for (String path : changes.getRemovedPaths()) {
+                stmt.addBatch(getDeleteQuery(path, conn));
+            }
+            stmt.executeBatch();
+            if (failingSaves) {
+                throw new RepositoryException("Failing save of " + changes);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            logger.debug(e.getMessage(), e);
+            rollback(conn);
+            throw new RepositoryException(changes.toString(), e);
+        } catch (RepositoryException e) {
+            rollback(conn);
+            throw e;
+        } finally {
+            DbUtility.close(conn, stmt, null);
+        }
+        for (ExternalData data : inserted) {
+            data.setId(data.getPath().replace('/', '_'));
+        }
+    }
+
+    @Override
+    public void saveItem(ExternalData data) throws RepositoryException {
+        saveItemCalls.incrementAndGet();
+        super.saveItem(data);
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public int getSaveChangesCalls() {
+        return saveChangesCalls.get();
+    }
+
+    /**
+     * @return the number of calls to the single item save, which should not be used as the data source saves in batch
+     */
+    public int getSaveItemCalls() {
+        return saveItemCalls.get();
+    }
+
+    public void resetCalls() {
+        saveChangesCalls.set(0);
+        saveItemCalls.set(0);
+    }
+
+    /**
+     * @param failingSaves <code>true</code> to roll back the transaction and fail the saves once all the statements are
+     *                     executed
+     */
+    public void setFailingSaves(boolean failingSaves) {
+        this.failingSaves = failingSaves;
+    }
+}
@@ -44,6 +44,8 @@
 package org.jahia.modules.external.test.db;
 
 import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 import javax.jcr.Node;
@@ -58,10 +60,23 @@ import javax.jcr.lock.LockException;
 import javax.jcr.query.InvalidQueryException;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
+import javax.management.ObjectName;
 
 import com.google.common.collect.Sets;
+import org.apache.commons.io.IOUtils;
+import net.sf.ehcache.Cache;
 import org.jahia.api.Constants;
+import org.jahia.modules.external.ExternalAccessControlManager;
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalProviderInitializerService;
+import org.jahia.modules.external.ExternalSessionImpl;
+import org.jahia.modules.external.cache.ExternalAclCache;
+import org.jahia.modules.external.metrics.ExternalProviderMetrics;
+import org.jahia.registries.ServicesRegistry;
+import org.jahia.services.SpringContextSingleton;
+import org.jahia.services.cache.ehcache.EhCacheProvider;
 import org.jahia.services.content.*;
+import org.jahia.services.content.decorator.JCRUserNode;
 import org.jahia.services.sites.JahiaSite;
 import org.jahia.services.usermanager.JahiaUserManagerService;
 import org.jahia.test.JahiaTestCase;
@@ -90,6 +105,14 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
 
     private final static String BATCH_CHILDREN_PROVIDER_MOUNTPOINT = "/external-database-mapped-batch-children";
 
+    private final static String BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT = "/external-database-mapped-batch-lazy-properties";
+
+    private final static String SEARCH_CURSOR_PROVIDER_MOUNTPOINT = "/external-database-mapped-search-cursor";
+
+    private final static String ACL_CACHE_PROVIDER_MOUNTPOINT = "/external-database-mapped-acl-cache";
+
+    private final static String BATCH_SAVE_PROVIDER_MOUNTPOINT = "/external-writeable-database-mapped-batch";
+
     private final static String MAPPED_PROVIDER_MOUNTPOINT_NO_MIXIN = "/external-database-mapped-no-mixin";
 
     private final static String MAPPED_PROVIDER_MOUNTPOINT_NO_NAMED_MIXIN = "/external-database-mapped-no-named-mixin";
@@ -194,6 +217,12 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
         assertTrue("Cannot find mounted provider at " + BATCH_CHILDREN_PROVIDER_MOUNTPOINT,
                 session.nodeExists(BATCH_CHILDREN_PROVIDER_MOUNTPOINT));
 
+        assertTrue("Cannot find mounted provider at " + BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT,
+                session.nodeExists(BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT));
+
+        assertTrue("Cannot find mounted provider at " + SEARCH_CURSOR_PROVIDER_MOUNTPOINT,
+                session.nodeExists(SEARCH_CURSOR_PROVIDER_MOUNTPOINT));
+
         assertTrue("Cannot find mounted provider at " + MAPPED_PROVIDER_MOUNTPOINT_NO_MIXIN,
                 session.nodeExists(MAPPED_PROVIDER_MOUNTPOINT_NO_MIXIN));
 
@@ -271,6 +300,7 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
     public void testMappedNodes() throws RepositoryException {
         testMappedNodes(MAPPED_PROVIDER_MOUNTPOINT);
         testMappedNodes(BATCH_CHILDREN_PROVIDER_MOUNTPOINT);
+        testMappedNodes(BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT);
     }
 
     public void testMappedNodes(String mountpoint) throws RepositoryException {
@@ -330,12 +360,200 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
     public void testMappedProperties() throws RepositoryException {
         testMappedProperties(MAPPED_PROVIDER_MOUNTPOINT);
         testMappedProperties(BATCH_CHILDREN_PROVIDER_MOUNTPOINT);
+        testMappedProperties(BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT);
     }
 
     public void testMappedProperties(String mountpoint) throws RepositoryException {
         checkProperties(session.getNode(mountpoint + "/CITIES/1"), true);
     }
 
+    @Test
+    public void testBatchLazyProperties() throws Exception {
+        Map<String, String> airports = new HashMap<String, String>();
+        Map<String, String> cityNames = new HashMap<String, String>();
+        for (JCRNodeWrapper city : session.getNode(MAPPED_PROVIDER_MOUNTPOINT + "/CITIES").getNodes()) {
+            airports.put(city.getName(), city.getProperty("airport").getString());
+            cityNames.put(city.getName(), city.getProperty("city_name").getString());
+        }
+        JCRNodeWrapper cities = session.getNode(BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT + "/CITIES");
+        CanLoadLazyPropertiesInBatchMappedDatabaseDataSource dataSource =
+                (CanLoadLazyPropertiesInBatchMappedDatabaseDataSource) ((ExternalContentStoreProvider) cities.getProvider()).getDataSource();
+        dataSource.resetCalls();
+        int count = 0;
+        for (JCRNodeWrapper city : cities.getNodes()) {
+            assertEquals(airports.get(city.getName()), city.getProperty("airport").getString());
+            assertEquals(cityNames.get(city.getName()), city.getProperty("city_name").getString());
+            InputStream airportCode = city.getProperty(CanLoadLazyPropertiesInBatchMappedDatabaseDataSource.AIRPORT_CODE_PROPERTY).getBinary().getStream();
+            try {
+                assertEquals(airports.get(city.getName()), IOUtils.toString(airportCode, "UTF-8"));
+            } finally {
+                IOUtils.closeQuietly(airportCode);
+            }
+            count++;
+        }
+        assertEquals(airports.size(), count);
+
+        // the siblings are preloaded by chunks of 1, 2, 4... nodes, up to 100, each chunk needs a single call per kind of property
+        int chunks = 0;
+        for (int loaded = 0, chunkSize = 1; loaded < count; loaded += chunkSize, chunkSize = Math.min(chunkSize * 2, 100)) {
+            chunks++;
+        }
+        assertEquals(chunks, dataSource.getPropertiesValuesCalls());
+        assertEquals(chunks, dataSource.getBinaryPropertiesValuesCalls());
+        // the lazy properties of the translation nodes are read along with the ones of the translation nodes of the sibling cities
+        assertEquals(chunks, dataSource.getI18nPropertiesValuesCalls());
+        assertEquals(0, dataSource.getPropertyValuesCalls());
+        assertEquals(0, dataSource.getBinaryPropertyValuesCalls());
+
+        checkProperties(session.getNode(BATCH_LAZY_PROPERTIES_PROVIDER_MOUNTPOINT + "/CITIES/1"), true);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        ExternalContentStoreProvider provider = (ExternalContentStoreProvider) session.getNode(MAPPED_PROVIDER_MOUNTPOINT).getProvider();
+        ExternalProviderMetrics metrics = provider.getMetrics();
+        assertSame(metrics, ExternalProviderMetrics.get(provider.getKey()));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(
+                "org.jahia.modules.external:type=ExternalProviderMetrics,provider=" + ObjectName.quote(provider.getKey()))));
+
+        metrics.reset();
+        JCRSessionFactory.getInstance().closeAllSessions();
+        session = JCRSessionFactory.getInstance().getCurrentUserSession(Constants.EDIT_WORKSPACE, Locale.ENGLISH);
+        long count = 0;
+        for (JCRNodeWrapper city : session.getNode(MAPPED_PROVIDER_MOUNTPOINT + "/CITIES").getNodes()) {
+            city.getProperty("city_name").getString();
+            count++;
+        }
+        assertTrue(metrics.getOperation(ExternalProviderMetrics.GET_CHILDREN).getCount() > 0);
+        assertTrue(metrics.getOperation(ExternalProviderMetrics.GET_ITEM_BY_PATH).getCount() >= count);
+        assertTrue(metrics.getSessionCacheChecks() > 0);
+
+        getResultCount("select * from [" + MappedDatabaseDataSource.DATA_TYPE_CITY + "] as city where city.[language] = 'Dutch' and isdescendantnode(city, '"
+                + MAPPED_PROVIDER_MOUNTPOINT + "')", false);
+        assertTrue(metrics.getOperation(ExternalProviderMetrics.SEARCH).getCount() > 0);
+    }
+
+    @Test
+    public void testBulkIdentifierMapping() throws Exception {
+        ExternalProviderInitializerService service = ((ExternalContentStoreProvider) session.getNode(MAPPED_PROVIDER_MOUNTPOINT)
+                .getProvider()).getExternalProviderInitializerService();
+        String providerKey = "bulkIdentifierMappingTest";
+        String providerId = service.getProviderId(providerKey).toString();
+        // more than two batches of 500 IDs
+        List<String> externalIds = new ArrayList<String>();
+        for (int i = 0; i < 1200; i++) {
+            externalIds.add("/bulk/" + i);
+        }
+        try {
+            assertTrue(service.getInternalIdentifiers(externalIds, providerKey).isEmpty());
+
+            Map<String, String> firstHalf = service.getOrCreateInternalIdentifiers(externalIds.subList(0, 600), providerKey, providerId);
+            assertEquals(600, firstHalf.size());
+
+            Map<String, String> all = service.getOrCreateInternalIdentifiers(externalIds, providerKey, providerId);
+            assertEquals(1200, all.size());
+            assertEquals(1200, new HashSet<String>(all.values()).size());
+            for (String externalId : externalIds.subList(0, 600)) {
+                assertEquals(firstHalf.get(externalId), all.get(externalId));
+            }
+            for (String externalId : Arrays.asList("/bulk/0", "/bulk/499", "/bulk/500", "/bulk/1199")) {
+                assertTrue(all.get(externalId).startsWith(providerId + "-"));
+                assertEquals(externalId, service.getExternalIdentifier(all.get(externalId)));
+            }
+
+            // read the mappings from the database, by batches, and check that none is created twice
+            getIdentifierCache().removeAll();
+            assertEquals(all, service.getInternalIdentifiers(externalIds, providerKey));
+            getIdentifierCache().removeAll();
+            assertEquals(all, service.getOrCreateInternalIdentifiers(externalIds, providerKey, providerId));
+
+            // an ID seen as not mapped is kept in the cache, and found as soon as it is mapped
+            assertNull(service.getInternalIdentifier("/bulk/new", providerKey));
+            assertNotNull(getIdentifierCache().get(providerKey + "-/bulk/new"));
+            assertNull(service.getInternalIdentifier("/bulk/new", providerKey));
+            String newId = service.mapInternalIdentifier("/bulk/new", providerKey, providerId);
+            assertEquals(newId, service.getInternalIdentifier("/bulk/new", providerKey));
+
+            service.delete(externalIds, providerKey, false);
+            assertTrue(service.getInternalIdentifiers(externalIds, providerKey).isEmpty());
+        } finally {
+            service.removeProvider(providerKey);
+        }
+    }
+
+    @Test
+    public void testAclCache() throws Exception {
+        final String userName = "externalAclCacheUser";
+        final ExternalContentStoreProvider provider = (ExternalContentStoreProvider) session.getNode(ACL_CACHE_PROVIDER_MOUNTPOINT).getProvider();
+        final ExternalAclCache aclCache = provider.getAclCache();
+        assertNotNull("ACL cache should be enabled", aclCache);
+
+        JahiaUserManagerService userManager = ServicesRegistry.getInstance().getJahiaUserManagerService();
+        JCRUserNode user = userManager.createUser(userName, "password", new Properties(), session);
+        JCRNodeWrapper root = session.getNode(ACL_CACHE_PROVIDER_MOUNTPOINT);
+        JCRNodeWrapper deniedCity = session.getNode(ACL_CACHE_PROVIDER_MOUNTPOINT + "/CITIES/1");
+        final long citiesCount = session.getNode(ACL_CACHE_PROVIDER_MOUNTPOINT + "/CITIES").getNodes().getSize();
+        try {
+            root.grantRoles("u:" + userName, Collections.singleton("owner"));
+            deniedCity.denyRoles("u:" + userName, Collections.singleton("owner"));
+            session.save();
+
+            JCRTemplate.getInstance().doExecute(userName, null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, new JCRCallback<Object>() {
+                public Object doInJCR(JCRSessionWrapper userSession) throws RepositoryException {
+                    // the denied city is skipped when the children are preloaded
+                    long count = 0;
+                    for (JCRNodeWrapper city : userSession.getNode(ACL_CACHE_PROVIDER_MOUNTPOINT + "/CITIES").getNodes()) {
+                        assertFalse("Denied node should not be returned", "1".equals(city.getName()));
+                        count++;
+                    }
+                    assertEquals(citiesCount - 1, count);
+                    assertFalse(userSession.nodeExists(ACL_CACHE_PROVIDER_MOUNTPOINT + "/CITIES/1"));
+
+                    ExternalAccessControlManager accessControlManager = ((ExternalSessionImpl) userSession.getProviderSession(provider)).getAccessControlManager();
+                    assertEquals(Arrays.asList("/CITIES", "/CITIES/2"), accessControlManager.checkRead(Arrays.asList("/CITIES", "/CITIES/1", "/CITIES/2")));
+                    return null;
+                }
+            });
+            assertTrue("Permissions of the user should be cached", aclCache.getSize() > 0);
+            assertEquals(aclCache.getHitCount(), provider.getMetrics().getAclCacheHits());
+            assertEquals(aclCache.getMissCount(), provider.getMetrics().getAclCacheMisses());
+            assertEquals(aclCache.getSize(), provider.getMetrics().getAclCacheSize());
+
+            // the decisions are shared with the other sessions, until the ACL is changed
+            long invalidations = aclCache.getInvalidationCount();
+            deniedCity.revokeRolesForPrincipal("u:" + userName);
+            session.save();
+            assertTrue("ACL cache should be invalidated by the ACL change", aclCache.getInvalidationCount() > invalidations);
+            assertEquals(aclCache.getInvalidationCount(), provider.getMetrics().getAclCacheInvalidations());
+
+            JCRTemplate.getInstance().doExecute(userName, null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, new JCRCallback<Object>() {
+                public Object doInJCR(JCRSessionWrapper userSession) throws RepositoryException {
+                    assertTrue(userSession.nodeExists(ACL_CACHE_PROVIDER_MOUNTPOINT + "/CITIES/1"));
+                    assertEquals(citiesCount, userSession.getNode(ACL_CACHE_PROVIDER_MOUNTPOINT + "/CITIES").getNodes().getSize());
+                    ExternalAccessControlManager accessControlManager = ((ExternalSessionImpl) userSession.getProviderSession(provider)).getAccessControlManager();
+                    assertEquals(Arrays.asList("/CITIES/1", "/CITIES/2"), accessControlManager.checkRead(Arrays.asList("/CITIES/1", "/CITIES/2")));
+                    return null;
+                }
+            });
+
+            // a move changes the ancestors, and then the permissions, of the moved subtree
+            assertTrue(aclCache.getSize() > 0);
+            invalidations = aclCache.getInvalidationCount();
+            session.getProviderSession(provider).getWorkspace().move("/CITIES/2", "/CITIES/2-moved");
+            assertTrue("ACL cache should be invalidated by the move", aclCache.getInvalidationCount() > invalidations);
+            assertEquals(0, aclCache.getSize());
+        } finally {
+            root.revokeAllRoles();
+            deniedCity.revokeAllRoles();
+            userManager.deleteUser(user.getPath(), session);
+            session.save();
+        }
+    }
+
+    private static Cache getIdentifierCache() {
+        return ((EhCacheProvider) SpringContextSingleton.getBean("ehCacheProvider")).getCacheManager().getCache("ExternalIdentifierMapping");
+    }
+
     /**
      * QA-6426
      *
@@ -353,6 +571,7 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
     public void testQueryConstraints() throws RepositoryException {
         testQueryConstraints(MAPPED_PROVIDER_MOUNTPOINT, false);
         testQueryConstraints(BATCH_CHILDREN_PROVIDER_MOUNTPOINT, false);
+        testQueryConstraints(SEARCH_CURSOR_PROVIDER_MOUNTPOINT, false);
         testQueryConstraints(MAPPED_PROVIDER_MOUNTPOINT_SUPPORT_COUNT, false);
     }
 
@@ -394,6 +613,7 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
     public void testQueryPaths() throws RepositoryException {
         testQueryPaths(MAPPED_PROVIDER_MOUNTPOINT, false);
         testQueryPaths(BATCH_CHILDREN_PROVIDER_MOUNTPOINT, false);
+        testQueryPaths(SEARCH_CURSOR_PROVIDER_MOUNTPOINT, false);
         testQueryPaths(MAPPED_PROVIDER_MOUNTPOINT_SUPPORT_COUNT, false);
     }
 
@@ -419,6 +639,7 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
     public void testQueryLimitAndOffset() throws RepositoryException {
         testQueryLimitAndOffset(MAPPED_PROVIDER_MOUNTPOINT, false);
         testQueryLimitAndOffset(BATCH_CHILDREN_PROVIDER_MOUNTPOINT, false);
+        testQueryLimitAndOffset(SEARCH_CURSOR_PROVIDER_MOUNTPOINT, false);
         testQueryLimitAndOffset(MAPPED_PROVIDER_MOUNTPOINT_SUPPORT_COUNT, false);
     }
 
@@ -467,6 +688,7 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
     public void testQueryNodeType() throws RepositoryException {
         testQueryNodeType(MAPPED_PROVIDER_MOUNTPOINT, false);
         testQueryNodeType(BATCH_CHILDREN_PROVIDER_MOUNTPOINT, false);
+        testQueryNodeType(SEARCH_CURSOR_PROVIDER_MOUNTPOINT, false);
         testQueryNodeType(MAPPED_PROVIDER_MOUNTPOINT_SUPPORT_COUNT, false);
     }
 
@@ -721,9 +943,73 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
 
     @Test
     public void testWritableAddNode() throws RepositoryException {
-        final JCRNodeWrapper parent = session.getNode("/external-writeable-database-mapped/AIRLINES");
+        testWritableAddNode("/external-writeable-database-mapped");
+
+        CanSaveInBatchWriteableMappedDatabaseProvider dataSource = (CanSaveInBatchWriteableMappedDatabaseProvider)
+                ((ExternalContentStoreProvider) session.getNode(BATCH_SAVE_PROVIDER_MOUNTPOINT).getProvider()).getDataSource();
+        dataSource.resetCalls();
+        testWritableAddNode(BATCH_SAVE_PROVIDER_MOUNTPOINT);
+        // each of the 3 session saves is passed at once to the data source
+        assertEquals(3, dataSource.getSaveChangesCalls());
+        assertEquals(0, dataSource.getSaveItemCalls());
+    }
+
+    @Test
+    public void testFailingBatchSave() throws Exception {
+        final ExternalContentStoreProvider provider = (ExternalContentStoreProvider) session.getNode(BATCH_SAVE_PROVIDER_MOUNTPOINT).getProvider();
+        CanSaveInBatchWriteableMappedDatabaseProvider dataSource = (CanSaveInBatchWriteableMappedDatabaseProvider) provider.getDataSource();
+        assertNotNull("Data cache should be enabled", provider.getDataCache());
+        final JCRCallback<Long> countAirlines = new JCRCallback<Long>() {
+            public Long doInJCR(JCRSessionWrapper otherSession) throws RepositoryException {
+                return otherSession.getNode(BATCH_SAVE_PROVIDER_MOUNTPOINT + "/AIRLINES").getNodes().getSize();
+            }
+        };
+        // the other sessions read the airlines through the shared data cache
+        long airlinesCount = JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, countAirlines);
+
+        JCRNodeWrapper parent = session.getNode(BATCH_SAVE_PROVIDER_MOUNTPOINT + "/AIRLINES");
+        JCRNodeWrapper n = parent.addNode("TS", "jtestnt:airline");
+        n.setProperty("airline", "TS");
+        n.setProperty("airline_full", "air transat");
+        n.setProperty("basic_rate", "0.15");
+        n.setProperty("distance_discount", "0.01");
+        try {
+            dataSource.setFailingSaves(true);
+            try {
+                session.save();
+                fail("Save should fail");
+            } catch (RepositoryException e) {
+                // the transaction is rolled back
+            } finally {
+                dataSource.setFailingSaves(false);
+            }
+
+            // the changes stay pending in the session, and nothing is visible from the other sessions
+            assertTrue(session.hasPendingChanges());
+            assertTrue(session.nodeExists(BATCH_SAVE_PROVIDER_MOUNTPOINT + "/AIRLINES/TS"));
+            assertEquals(airlinesCount, (long) JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, countAirlines));
+            assertFalse(JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, new JCRCallback<Boolean>() {
+                public Boolean doInJCR(JCRSessionWrapper otherSession) throws RepositoryException {
+                    return otherSession.nodeExists(BATCH_SAVE_PROVIDER_MOUNTPOINT + "/AIRLINES/TS");
+                }
+            }));
+
+            // the pending changes are saved by the next save
+            session.save();
+            assertFalse(session.hasPendingChanges());
+            assertEquals(airlinesCount + 1, (long) JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, countAirlines));
+        } finally {
+            if (session.nodeExists(BATCH_SAVE_PROVIDER_MOUNTPOINT + "/AIRLINES/TS")) {
+                session.getNode(BATCH_SAVE_PROVIDER_MOUNTPOINT + "/AIRLINES/TS").remove();
+                session.save();
+            }
+        }
+    }
+
+    public void testWritableAddNode(String mountpoint) throws RepositoryException {
+        final JCRNodeWrapper parent = session.getNode(mountpoint + "/AIRLINES");
         JCRNodeWrapper n = parent.addNode("TS", "jtestnt:airline");
-//        JCRNodeWrapper n = session.getNode("/external-writeable-database-mapped/AIRLINES/AT")
+//        JCRNodeWrapper n = session.getNode(mountpoint + "/AIRLINES/AT")
         n.setProperty("airline", "TS");
         n.setProperty("airline_full", "air transat");
         n.setProperty("basic_rate", "0.15");
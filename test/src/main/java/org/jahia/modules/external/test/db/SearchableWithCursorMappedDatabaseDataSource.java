@@ -0,0 +1,85 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.db;
+
+import java.util.Iterator;
+import java.util.List;
+import javax.jcr.RepositoryException;
+
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.ExternalQuery;
+import org.jahia.modules.external.ExternalSearchCursor;
+import org.jahia.modules.external.ExternalSearchResult;
+
+/**
+ * Mapped database data source returning its search results, with their data, through a cursor.
+ */
+public class SearchableWithCursorMappedDatabaseDataSource extends MappedDatabaseDataSource implements ExternalDataSource.SearchableWithCursor {
+    @Override
+    public ExternalSearchCursor search(ExternalQuery query, int fetchSize) throws RepositoryException {
+        final List<String> paths = search(query);
+        final Iterator<String> it = paths.iterator();
+        return new ExternalSearchCursor() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public ExternalSearchResult next() throws RepositoryException {
+                return new ExternalSearchResult(getItemByPath(it.next()));
+            }
+
+            @Override
+            public long getSize() {
+                return -1;
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+    }
+}
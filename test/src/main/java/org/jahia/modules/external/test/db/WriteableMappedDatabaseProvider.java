@@ -83,6 +83,19 @@ public class WriteableMappedDatabaseProvider extends MappedDatabaseDataSource im
 
     @Override
     public void order(String path, List<String> children) throws RepositoryException {
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            order(path, children, conn);
+        } finally {
+            DbUtility.close(conn, null, null);
+        }
+    }
+
+    /**
+     * Orders the children of a node using the specified connection. Rows have no order, so nothing is done.
+     */
+    protected void order(String path, List<String> children, Connection conn) throws RepositoryException {
         //
     }
 
@@ -107,123 +120,113 @@ public class WriteableMappedDatabaseProvider extends MappedDatabaseDataSource im
     }
 
     private void insertRow(String path, ExternalData data) throws RepositoryException {
-        String[] pathTokens = StringUtils.split(path, '/');
-        if (pathTokens.length != 2) {
-            throw new PathNotFoundException(path);
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            executeUpdate(path, getInsertQuery(path, data), conn);
+        } finally {
+            DbUtility.close(conn, null, null);
         }
-        String table = pathTokens[0];
+    }
 
+    private void updateRow(String path, ExternalData data) throws RepositoryException {
         Connection conn = null;
-        Statement stmt = null;
-        Map<String, String> cols = getColumnValues(data, table);
-        String v = " (" + StringUtils.join(cols.keySet(), ",") + ") values (" + StringUtils.join(cols.values(), ",") + ")";
         try {
             conn = getConnection();
+            executeUpdate(path, getUpdateQuery(path, data, conn), conn);
+        } finally {
+            DbUtility.close(conn, null, null);
+        }
+    }
 
-            String query = "insert into " + table + v;
+    private void deleteRow(String path) throws RepositoryException {
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            executeUpdate(path, getDeleteQuery(path, conn), conn);
+        } finally {
+            DbUtility.close(conn, null, null);
+        }
+    }
 
+    private void executeUpdate(String path, String query, Connection conn) throws RepositoryException {
+        Statement stmt = null;
+        try {
             stmt = conn.createStatement();
             stmt.executeUpdate(query);
         } catch (SQLException e) {
             logger.debug(e.getMessage(), e);
             throw new RepositoryException(path,e);
         } finally {
-            DbUtility.close(conn, stmt, null);
+            DbUtility.close(null, stmt, null);
         }
     }
 
-
-    private void updateRow(String path, ExternalData data) throws RepositoryException {
+    protected String getInsertQuery(String path, ExternalData data) throws RepositoryException {
         String[] pathTokens = StringUtils.split(path, '/');
         if (pathTokens.length != 2) {
             throw new PathNotFoundException(path);
         }
         String table = pathTokens[0];
-        String rowId = pathTokens[1];
-
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
 
-        try {
-            conn = getConnection();
-            List<String> primaryKeys = getTablePrimaryKeys(table, conn);
+        Map<String, String> cols = getColumnValues(data, table);
+        String v = " (" + StringUtils.join(cols.keySet(), ",") + ") values (" + StringUtils.join(cols.values(), ",") + ")";
+        return "insert into " + table + v;
+    }
 
-            String[] rowData = getValuesForPrimayKeys(rowId);
+    /**
+     * @param conn the connection used to read the primary keys of the table
+     */
+    protected String getUpdateQuery(String path, ExternalData data, Connection conn) throws RepositoryException {
+        String[] pathTokens = StringUtils.split(path, '/');
+        if (pathTokens.length != 2) {
+            throw new PathNotFoundException(path);
+        }
+        String table = pathTokens[0];
 
-            Map<String, String> cols = getColumnValues(data, table);
-            StringBuilder s = new StringBuilder();
-            for (Map.Entry<String, String> entry : cols.entrySet()) {
-                if (s.length() > 0) {
-                    s.append(" , ");
-                }
-                s.append(entry.getKey()).append("=").append(entry.getValue());
-            }
-            String query = null;
-            if (primaryKeys.size() == 1) {
-                query = "update " + table + " set " + s.toString() + " where " + primaryKeys.get(0) + "='"+rowData[0]+"'";
-            } else {
-                StringBuilder buff = new StringBuilder();
-                for (String col : primaryKeys) {
-                    if (buff.length() > 0) {
-                        buff.append(" and ");
-                    }
-                    buff.append(col).append("='"+rowData[primaryKeys.indexOf(col)]+"'");
-                }
-                query = "update " + table + " set " + s.toString() + " where " + buff.toString();
+        Map<String, String> cols = getColumnValues(data, table);
+        StringBuilder s = new StringBuilder();
+        for (Map.Entry<String, String> entry : cols.entrySet()) {
+            if (s.length() > 0) {
+                s.append(" , ");
             }
-
-            stmt = conn.createStatement();
-
-            stmt.executeUpdate(query);
-        } catch (SQLException e) {
-            logger.debug(e.getMessage(), e);
-            throw new RepositoryException(path,e);
-        } finally {
-            DbUtility.close(conn, stmt, rs);
+            s.append(entry.getKey()).append("=").append(entry.getValue());
         }
+        return "update " + table + " set " + s.toString() + " where " + getPrimaryKeysCondition(path, conn);
     }
 
-    private void deleteRow(String path) throws RepositoryException {
+    /**
+     * @param conn the connection used to read the primary keys of the table
+     */
+    protected String getDeleteQuery(String path, Connection conn) throws RepositoryException {
         String[] pathTokens = StringUtils.split(path, '/');
         if (pathTokens.length != 2) {
             throw new PathNotFoundException(path);
         }
         String table = pathTokens[0];
+        return "delete from " + table + " where " + getPrimaryKeysCondition(path, conn);
+    }
+
+    private String getPrimaryKeysCondition(String path, Connection conn) {
+        String[] pathTokens = StringUtils.split(path, '/');
+        String table = pathTokens[0];
         String rowId = pathTokens[1];
 
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
+        List<String> primaryKeys = getTablePrimaryKeys(table, conn);
 
-        try {
-            conn = getConnection();
-            List<String> primaryKeys = getTablePrimaryKeys(table, conn);
-
-            String[] rowData = getValuesForPrimayKeys(rowId);
-
-            String query = null;
-            if (primaryKeys.size() == 1) {
-                query = "delete from " + table + " where " + primaryKeys.get(0) + "='"+rowData[0]+"'";
-            } else {
-                StringBuilder buff = new StringBuilder();
-                for (String col : primaryKeys) {
-                    if (buff.length() > 0) {
-                        buff.append(" and ");
-                    }
-                    buff.append(col).append("='"+rowData[primaryKeys.indexOf(col)]+"'");
+        String[] rowData = getValuesForPrimayKeys(rowId);
+
+        if (primaryKeys.size() == 1) {
+            return primaryKeys.get(0) + "='"+rowData[0]+"'";
+        } else {
+            StringBuilder buff = new StringBuilder();
+            for (String col : primaryKeys) {
+                if (buff.length() > 0) {
+                    buff.append(" and ");
                 }
-                query = "delete from " + table + " where " + buff.toString();
+                buff.append(col).append("='"+rowData[primaryKeys.indexOf(col)]+"'");
             }
-
-            stmt = conn.createStatement();
-
-            stmt.executeUpdate(query);
-        } catch (SQLException e) {
-            logger.debug(e.getMessage(), e);
-            throw new RepositoryException(path,e);
-        } finally {
-            DbUtility.close(conn, stmt, rs);
+            return buff.toString();
         }
     }
 
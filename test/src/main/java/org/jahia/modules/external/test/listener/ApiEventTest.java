@@ -51,6 +51,7 @@ import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.jahia.bin.Jahia;
 import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.events.AsyncEventQueue;
 import org.jahia.modules.external.events.EventService;
 import org.jahia.osgi.BundleUtils;
 import org.jahia.registries.ServicesRegistry;
@@ -384,7 +385,97 @@ public class ApiEventTest  extends JahiaTestCase {
         });
     }
 
+    @Test
+    public void testAsyncCoalescedEvents() throws Exception {
+        ConfigurationAdmin configurationAdmin = BundleUtils.getOsgiService(ConfigurationAdmin.class, null);
+        Configuration configuration = configurationAdmin.getConfiguration("org.jahia.modules.api.external_provider.event");
+        Dictionary<String, Object> properties = configuration.getProperties();
+        AsyncEventQueue asyncEventQueue = (AsyncEventQueue) ServicesRegistry.getInstance().getJahiaTemplateManagerService()
+                .getTemplatePackageById("external-provider").getContext().getBean("asyncEventQueue");
+
+        Hashtable<String, Object> asyncProps = new Hashtable<>();
+        asyncProps.put("providers.event.api.key", API_KEY);
+        asyncProps.put("event.api.async", "true");
+        asyncProps.put("event.api.async.coalescingWindow", "2000");
+        asyncProps.put("event.api.async.queueCapacity", "2");
+        configuration.update(asyncProps);
+        try {
+            final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+            executeListeners(() -> {
+                try {
+                    // wait for the configuration to be applied, and for the first queued event to be sent
+                    long timeout = System.currentTimeMillis() + 5000;
+                    int status;
+                    while ((status = executeCall("[{\n" +
+                            "    \"path\":\"/tata\"\n" +
+                            "  }]")) == 200 && System.currentTimeMillis() < timeout) {
+                        Thread.sleep(100);
+                    }
+                    assertEquals(202, status);
+                    // ignore the events sent synchronously before the configuration was applied
+                    received.clear();
+                    waitForEvents(received);
+                    received.clear();
+
+                    // several events for the same path within the coalescing window are sent as a single event
+                    long coalesced = asyncEventQueue.getMetrics(PROVIDER).getCoalescedEvents();
+                    for (int i = 0; i < 3; i++) {
+                        assertEquals(202, executeCall("[{\n" +
+                                "    \"path\":\"/tata\"\n" +
+                                "  }]"));
+                    }
+                    waitForEvents(received);
+                    Thread.sleep(asyncEventQueue.getCoalescingWindow() + 500);
+                    assertEquals(Collections.singletonList(1), received);
+                    assertEquals(coalesced + 2, asyncEventQueue.getMetrics(PROVIDER).getCoalescedEvents());
+                } catch (IOException | InterruptedException e) {
+                    fail(e.getMessage());
+                }
+                return null;
+            }, it -> {
+                received.add((int) it.getSize());
+                simpleEventCB.accept(it);
+            });
+
+            // more distinct paths than the queue capacity
+            PostMethod method = executeMethod("[{\n" +
+                    "    \"path\":\"/tata\"\n" +
+                    "  },{\n" +
+                    "    \"path\":\"/tata2\"\n" +
+                    "  },{\n" +
+                    "    \"path\":\"/tata3\"\n" +
+                    "  }]", PROVIDER, API_KEY);
+            assertEquals(429, method.getStatusCode());
+            assertNotNull(method.getResponseHeader("Retry-After"));
+            assertEquals("2", method.getResponseHeader("Retry-After").getValue());
+
+            // a stopped queue refuses the events
+            asyncEventQueue.stop();
+            try {
+                assertEquals(503, executeCall("[{\n" +
+                        "    \"path\":\"/tata\"\n" +
+                        "  }]"));
+            } finally {
+                asyncEventQueue.start();
+            }
+        } finally {
+            configuration.update(properties);
+        }
+    }
+
+    private static void waitForEvents(List<Integer> received) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (received.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(100);
+        }
+        assertFalse("Queued events were not sent", received.isEmpty());
+    }
+
     private int executeCall(String body, String provider, String apiKey) throws IOException {
+        return executeMethod(body, provider, apiKey).getStatusCode();
+    }
+
+    private PostMethod executeMethod(String body, String provider, String apiKey) throws IOException {
         HttpClient client = new HttpClient();
 
         URL url = new URL(getBaseServerURL() + Jahia.getContextPath() + "/modules/external-provider/events/" + provider);
@@ -402,7 +493,8 @@ public class ApiEventTest  extends JahiaTestCase {
         method.setRequestEntity(new StringRequestEntity(body, "application/json","UTF-8"));
         method.setRequestHeader("apiKey", apiKey);
 
-        return client.executeMethod(method);
+        client.executeMethod(method);
+        return method;
     }
 
     private int executeCall(String body, String provider) throws IOException {
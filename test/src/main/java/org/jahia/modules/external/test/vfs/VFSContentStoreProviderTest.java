@@ -44,16 +44,25 @@
 package org.jahia.modules.external.test.vfs;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.jahia.ajax.gwt.client.data.definition.GWTJahiaNodeProperty;
 import org.jahia.ajax.gwt.client.data.node.GWTJahiaNode;
 import org.jahia.ajax.gwt.client.service.GWTJahiaServiceException;
 import org.jahia.ajax.gwt.helper.NavigationHelper;
 import org.jahia.api.Constants;
+import org.jahia.modules.external.ExternalBinaryImpl;
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.ExternalQuery;
+import org.jahia.modules.external.vfs.IndexedVFSDataSource;
+import org.jahia.modules.external.vfs.VFSBinaryImpl;
+import org.jahia.modules.external.vfs.VFSDataSource;
 import org.jahia.modules.external.vfs.factory.VFSMountPointFactory;
 import org.jahia.modules.external.vfs.factory.VFSMountPointFactoryHandler;
 import org.jahia.services.SpringContextSingleton;
 import org.jahia.services.content.*;
 import org.jahia.services.content.decorator.JCRSiteNode;
+import org.jahia.services.query.QueryWrapper;
 import org.jahia.services.sites.JahiaSite;
 import org.jahia.services.usermanager.JahiaUser;
 import org.jahia.test.JahiaAdminUser;
@@ -66,11 +75,17 @@ import org.slf4j.Logger;
 
 import javax.jcr.*;
 import javax.jcr.nodetype.NodeType;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -93,6 +108,7 @@ public class VFSContentStoreProviderTest {
     private static final String MOUNTS_DYNAMIC_MOUNT_POINT = "/mounts/dynamic-mount";
     private static final String MOUNTS_DYNAMIC_MOUNT_POINT_TARGET = "/mounts/dynamic";
     private static final String MOUNTS_DYNAMIC_MOUNT_POINT_NAME = "dynamic";
+    private static final String CACHED_MOUNT_POINT = "/external-vfs-cached";
 
     private static final String SIMPLE_WEAKREFERENCE_PROPERTY_NAME = "test:simpleNode";
     private static final String MULTIPLE_WEAKREFERENCE_PROPERTY_NAME = "test:multipleNode";
@@ -202,6 +218,7 @@ public class VFSContentStoreProviderTest {
             vfsMountPointFactory.setRoot("file://" + dynamicMountDir.getAbsolutePath());
             vfsMountPointFactoryHandler.save(vfsMountPointFactory);
             assertRootNavigation(session);
+            assertFalse("Mount point without index should not be searchable", getDynamicProvider().getDataSource() instanceof ExternalDataSource.Searchable);
 
             JCRNodeWrapper targetMountNode = getNode(session, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET);
             assertNode(targetMountNode, 0);
@@ -496,6 +513,256 @@ public class VFSContentStoreProviderTest {
         }
     }
 
+    @Test
+    public void testBinaryRead() throws Exception {
+        JahiaUser jahiaRootUser = JahiaAdminUser.getAdminUser(null);
+        try {
+            JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession();
+            VFSMountPointFactory vfsMountPointFactory = new VFSMountPointFactory();
+            vfsMountPointFactory.setName(MOUNTS_DYNAMIC_MOUNT_POINT_NAME);
+            vfsMountPointFactory.setRoot("file://" + dynamicMountDir.getAbsolutePath());
+            vfsMountPointFactoryHandler.save(vfsMountPointFactory);
+
+            JCRNodeWrapper mountNode = getNode(session, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET);
+            String value = "This is a test";
+            String name = "binary_" + System.currentTimeMillis() + ".txt";
+            mountNode.uploadFile(name, new ByteArrayInputStream(value.getBytes("UTF-8")), "text/plain");
+            session.save();
+
+            getCleanSession();
+            JCRNodeWrapper content = getNode(englishEditSession, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET + "/" + name + "/" + Constants.JCR_CONTENT);
+            Binary binary = content.getProperty(Constants.JCR_DATA).getBinary();
+            assertEquals("Wrong binary size", value.length(), binary.getSize());
+
+            byte[] buffer = new byte[4];
+            assertEquals(4, binary.read(buffer, 5));
+            assertEquals("is a", new String(buffer, "UTF-8"));
+            buffer = new byte[10];
+            assertEquals(4, binary.read(buffer, 10));
+            assertEquals("test", new String(buffer, 0, 4, "UTF-8"));
+            assertEquals(-1, binary.read(buffer, value.length()));
+
+            // each stream is read from the beginning
+            for (int i = 0; i < 2; i++) {
+                InputStream is = binary.getStream();
+                try {
+                    assertEquals(value, IOUtils.toString(is, "UTF-8"));
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(value.length(), ((VFSBinaryImpl) binary).transferTo(Channels.newChannel(out)));
+            assertEquals(value, out.toString("UTF-8"));
+
+            // a local binary saved on a local mount is transferred between the file channels
+            String copyName = "copy_" + name;
+            JCRNodeWrapper copy = getNode(englishEditSession, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET).addNode(copyName, "jnt:file");
+            JCRNodeWrapper copyContent = copy.addNode(Constants.JCR_CONTENT, "jnt:resource");
+            copyContent.setProperty(Constants.JCR_DATA, binary);
+            copyContent.setProperty(Constants.JCR_MIMETYPE, "text/plain");
+            englishEditSession.save();
+            assertEquals(value, FileUtils.readFileToString(new File(dynamicMountDir, copyName), "UTF-8"));
+        } finally {
+            unMountDynamicMountPoint();
+            removeDynamicMountPoint(jahiaRootUser);
+        }
+    }
+
+    @Test
+    public void testNonMarkableBinary() throws Exception {
+        // larger than the buffers used to read the stream, and not markable
+        byte[] value = new byte[1024 * 1024 + 17];
+        new Random(42).nextBytes(value);
+
+        ExternalBinaryImpl binary = new ExternalBinaryImpl(new NonMarkableInputStream(value));
+        try {
+            assertEquals("Wrong binary size", value.length, binary.getSize());
+            byte[] buffer = new byte[100];
+            assertEquals(100, binary.read(buffer, 700000));
+            assertArrayEquals(Arrays.copyOfRange(value, 700000, 700100), buffer);
+            assertEquals(17, binary.read(buffer, 1024 * 1024));
+            assertEquals(-1, binary.read(buffer, value.length));
+            for (int i = 0; i < 2; i++) {
+                InputStream is = binary.getStream();
+                try {
+                    assertArrayEquals(value, IOUtils.toByteArray(is));
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+            }
+        } finally {
+            binary.dispose();
+        }
+
+        JahiaUser jahiaRootUser = JahiaAdminUser.getAdminUser(null);
+        try {
+            JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession();
+            VFSMountPointFactory vfsMountPointFactory = new VFSMountPointFactory();
+            vfsMountPointFactory.setName(MOUNTS_DYNAMIC_MOUNT_POINT_NAME);
+            vfsMountPointFactory.setRoot("file://" + dynamicMountDir.getAbsolutePath());
+            vfsMountPointFactoryHandler.save(vfsMountPointFactory);
+
+            JCRNodeWrapper mountNode = getNode(session, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET);
+            String name = "large_" + System.currentTimeMillis() + ".bin";
+            mountNode.uploadFile(name, new NonMarkableInputStream(value), "application/octet-stream");
+            session.save();
+
+            assertArrayEquals(value, FileUtils.readFileToByteArray(new File(dynamicMountDir, name)));
+            getCleanSession();
+            JCRNodeWrapper content = getNode(englishEditSession, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET + "/" + name + "/" + Constants.JCR_CONTENT);
+            assertEquals("Wrong binary size", value.length, content.getProperty(Constants.JCR_DATA).getBinary().getSize());
+        } finally {
+            removeDynamicMountPoint(jahiaRootUser);
+        }
+    }
+
+    /**
+     * Stream which does not support mark and reset, like most of the streams received on uploads.
+     */
+    private static class NonMarkableInputStream extends FilterInputStream {
+
+        NonMarkableInputStream(byte[] content) {
+            super(new ByteArrayInputStream(content));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+    }
+
+    @Test
+    public void testIndexedSearch() throws Exception {
+        JahiaUser jahiaRootUser = JahiaAdminUser.getAdminUser(null);
+        try {
+            JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession();
+            VFSMountPointFactory vfsMountPointFactory = new VFSMountPointFactory();
+            vfsMountPointFactory.setName(MOUNTS_DYNAMIC_MOUNT_POINT_NAME);
+            vfsMountPointFactory.setRoot("file://" + dynamicMountDir.getAbsolutePath());
+            vfsMountPointFactory.setIndexed(true);
+            vfsMountPointFactoryHandler.save(vfsMountPointFactory);
+
+            JCRNodeWrapper mountNode = getNode(session, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET);
+            JCRNodeWrapper folder = mountNode.addNode("indexed_" + System.currentTimeMillis(), Constants.JAHIANT_FOLDER);
+            folder.uploadFile("a.txt", new ByteArrayInputStream("a".getBytes("UTF-8")), "text/plain");
+            folder.uploadFile("b.txt", new ByteArrayInputStream("b".getBytes("UTF-8")), "text/plain");
+            folder.addNode("sub", Constants.JAHIANT_FOLDER).uploadFile("c.png", new ByteArrayInputStream("c".getBytes("UTF-8")), "image/png");
+            session.save();
+
+            getCleanSession();
+            QueryManager queryManager = englishEditSession.getWorkspace().getQueryManager();
+            String descendants = "isdescendantnode('" + folder.getPath() + "')";
+
+            assertEquals(3, getResultSize(queryManager, "select * from [jnt:file] where " + descendants));
+            assertEquals(2, getResultSize(queryManager, "select * from [jnt:file] where ischildnode('" + folder.getPath() + "')"));
+            assertEquals(1, getResultSize(queryManager, "select * from [jnt:folder] where " + descendants));
+            assertEquals(2, getResultSize(queryManager, "select * from [jnt:file] where " + descendants + " and localname() like '%.txt'"));
+            assertEquals(1, getResultSize(queryManager, "select * from [jnt:file] where " + descendants + " and localname() = 'b.txt'"));
+
+            Query query = queryManager.createQuery("select * from [jnt:file] where " + descendants, Query.JCR_SQL2);
+            query.setOffset(1);
+            query.setLimit(1);
+            assertEquals(1, query.execute().getNodes().getSize());
+
+            ExternalContentStoreProvider provider = getDynamicProvider();
+            assertTrue(provider.getDataSource() instanceof IndexedVFSDataSource);
+            ExternalDataSource.Searchable dataSource = (ExternalDataSource.Searchable) provider.getDataSource();
+            String children = "ischildnode(n, ['" + folder.getPath() + "'])";
+            assertEquals(2, dataSource.search(getExternalQuery(queryManager, provider, "select * from [jnt:file] as n where " + children
+                    + " and (n.[jcr:language] = 'en' or not n.[jcr:language] is not null)")).size());
+            assertUnsupportedQuery(dataSource, getExternalQuery(queryManager, provider, "select * from [jnt:file] as n where " + children
+                    + " and not localname(n) = 'b.txt'"));
+            assertUnsupportedQuery(dataSource, getExternalQuery(queryManager, provider, "select * from [jnt:file] as n where " + children
+                    + " and (localname(n) = 'a.txt' or localname(n) = 'b.txt')"));
+            assertUnsupportedQuery(dataSource, getExternalQuery(queryManager, provider, "select * from [jnt:file] as n where " + children
+                    + " order by localname(n)"));
+        } finally {
+            unMountDynamicMountPoint();
+            removeDynamicMountPoint(jahiaRootUser);
+        }
+    }
+
+    @Test
+    public void testWorkspaceMoveWithDataCache() throws Exception {
+        File cachedMountDir = new File(System.getProperty("java.io.tmpdir"), "cachedMountDirectory" + System.currentTimeMillis());
+        FileUtils.writeStringToFile(new File(cachedMountDir, "folder/file.txt"), "moved", "UTF-8");
+
+        ExternalContentStoreProvider provider = (ExternalContentStoreProvider) SpringContextSingleton.getBean("ExternalStoreProviderPrototype");
+        provider.setKey("cachedVfsMountTest");
+        provider.setMountPoint(CACHED_MOUNT_POINT);
+        VFSDataSource dataSource = new VFSDataSource();
+        dataSource.setRoot("file://" + cachedMountDir.getAbsolutePath());
+        provider.setDataSource(dataSource);
+        provider.setDataCacheEnabled(true);
+        provider.setDynamicallyMounted(true);
+        provider.setSessionFactory(JCRSessionFactory.getInstance());
+        provider.start();
+        try {
+            getCleanSession();
+            // fill the shared data cache with the items and the children lists
+            assertTrue(englishEditSession.nodeExists(CACHED_MOUNT_POINT + "/folder/file.txt"));
+            assertEquals(1, englishEditSession.getNode(CACHED_MOUNT_POINT).getNodes().getSize());
+            assertTrue(provider.getDataCache().getSize() > 0);
+            assertEquals(provider.getDataCache().getSize(), provider.getMetrics().getDataCacheSize());
+            assertEquals(provider.getDataCache().getMissCount(), provider.getMetrics().getDataCacheMisses());
+
+            englishEditSession.getWorkspace().move(CACHED_MOUNT_POINT + "/folder", CACHED_MOUNT_POINT + "/moved");
+
+            // a new session reads the data through the shared cache
+            getCleanSession();
+            assertFalse(englishEditSession.nodeExists(CACHED_MOUNT_POINT + "/folder"));
+            assertFalse(englishEditSession.nodeExists(CACHED_MOUNT_POINT + "/folder/file.txt"));
+            assertTrue(englishEditSession.nodeExists(CACHED_MOUNT_POINT + "/moved/file.txt"));
+            NodeIterator children = englishEditSession.getNode(CACHED_MOUNT_POINT).getNodes();
+            assertEquals(1, children.getSize());
+            assertEquals("moved", children.nextNode().getName());
+        } finally {
+            provider.stop();
+            FileUtils.deleteQuietly(cachedMountDir);
+        }
+    }
+
+    private static ExternalContentStoreProvider getDynamicProvider() {
+        return (ExternalContentStoreProvider) JCRStoreService.getInstance().getSessionFactory().getProvider(MOUNTS_DYNAMIC_MOUNT_POINT_TARGET, false);
+    }
+
+    private ExternalQuery getExternalQuery(QueryManager queryManager, ExternalContentStoreProvider provider, String statement) throws RepositoryException {
+        ExternalQuery query = (ExternalQuery) ((QueryWrapper) queryManager.createQuery(statement, Query.JCR_SQL2)).getQueries().get(provider);
+        assertNotNull("No query for the provider : " + statement, query);
+        return new ExternalQuery(query.getSource(), query.getConstraint(), query.getOrderings(), query.getColumns());
+    }
+
+    private void assertUnsupportedQuery(ExternalDataSource.Searchable dataSource, ExternalQuery query) throws RepositoryException {
+        try {
+            dataSource.search(query);
+            fail("Query should not be supported by the index : " + query.getConstraint());
+        } catch (UnsupportedRepositoryOperationException e) {
+            // expected
+        }
+    }
+
+    private long getResultSize(QueryManager queryManager, String statement) throws RepositoryException {
+        NodeIterator nodes = queryManager.createQuery(statement, Query.JCR_SQL2).execute().getNodes();
+        long size = 0;
+        while (nodes.hasNext()) {
+            nodes.nextNode();
+            size++;
+        }
+        return size;
+    }
+
     private JCRNodeWrapper getNode(JCRSessionWrapper session, String path) throws RepositoryException {
         try {
             JCRNodeWrapper node = session.getNode(path);
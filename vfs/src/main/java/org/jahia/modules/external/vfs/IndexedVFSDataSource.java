@@ -0,0 +1,287 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.vfs;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.*;
+import org.apache.commons.vfs2.impl.DefaultFileMonitor;
+import org.jahia.api.Constants;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.ExternalQuery;
+import org.jahia.services.content.nodetypes.ExtendedNodeType;
+import org.jahia.services.content.nodetypes.NodeTypeRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * VFS data source which keeps an in-memory index of its files and folders, used to answer the queries on the mount.
+ * The index is built when the data source is started, and kept up to date by the writes of the data source and by a
+ * VFS file monitor. Folders are crawled in parallel by a pool dedicated to the data source, so that a large mount does
+ * not hold the common pool of the JVM.
+ */
+public class IndexedVFSDataSource extends VFSDataSource implements ExternalDataSource.Searchable, ExternalDataSource.SupportCount,
+        ExternalDataSource.Initializable {
+    private static final Logger logger = LoggerFactory.getLogger(IndexedVFSDataSource.class);
+    private static final String JCR_CONTENT_SUFFIX = "/" + Constants.JCR_CONTENT;
+    private volatile VFSIndex index;
+    private DefaultFileMonitor fileMonitor;
+    private ForkJoinPool indexPool;
+    private int indexParallelism = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * @param indexParallelism maximum number of threads crawling the folders when the index is built
+     */
+    public void setIndexParallelism(int indexParallelism) {
+        this.indexParallelism = indexParallelism;
+    }
+
+    @Override
+    public void start() {
+        indexPool = new ForkJoinPool(indexParallelism);
+        buildIndex();
+        // keep the index up to date with the changes done outside of the data source
+        fileMonitor = new DefaultFileMonitor(new FileListener() {
+            @Override
+            public void fileCreated(FileChangeEvent event) {
+                updateIndex(event.getFile(), false);
+            }
+
+            @Override
+            public void fileDeleted(FileChangeEvent event) {
+                updateIndex(event.getFile(), false);
+            }
+
+            @Override
+            public void fileChanged(FileChangeEvent event) {
+                updateIndex(event.getFile(), false);
+            }
+        });
+        fileMonitor.setRecursive(true);
+        fileMonitor.addFile(getRoot());
+        fileMonitor.start();
+    }
+
+    @Override
+    public void stop() {
+        if (fileMonitor != null) {
+            fileMonitor.stop();
+            fileMonitor = null;
+        }
+        index = null;
+        if (indexPool != null) {
+            indexPool.shutdownNow();
+            indexPool = null;
+        }
+    }
+
+    /**
+     * Builds the index of all the files and folders under the root, folders being read in parallel.
+     */
+    protected void buildIndex() {
+        long start = System.currentTimeMillis();
+        VFSIndex newIndex = new VFSIndex();
+        indexPool.invoke(new IndexTask(newIndex, getRoot()));
+        index = newIndex;
+        logger.info("Indexed {} items of {} in {} ms", newIndex.size(), getRoot().getName(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Updates the index after a file or folder has been created, changed or deleted. The entries of a deleted folder
+     * descendants are always removed.
+     *
+     * @param fileObject      the file or folder
+     * @param withDescendants true to index again the descendants of the folder, when they are not notified separately
+     */
+    protected void updateIndex(FileObject fileObject, boolean withDescendants) {
+        VFSIndex currentIndex = index;
+        if (currentIndex == null) {
+            return;
+        }
+        String path = getPath(fileObject);
+        if ("/".equals(path)) {
+            // the root itself is not indexed
+            if (withDescendants) {
+                buildIndex();
+            }
+            return;
+        }
+        try {
+            fileObject.refresh();
+            if (!fileObject.exists()) {
+                currentIndex.remove(path);
+            } else {
+                if (withDescendants) {
+                    currentIndex.remove(path);
+                }
+                if (addToIndex(currentIndex, fileObject) && withDescendants && fileObject.getType() == FileType.FOLDER) {
+                    indexPool.invoke(new IndexTask(currentIndex, fileObject));
+                }
+            }
+        } catch (FileSystemException e) {
+            logger.warn("Unable to index {}", fileObject.getName(), e);
+        }
+    }
+
+    private void updateIndex(String path, boolean withDescendants) {
+        if (index != null) {
+            try {
+                updateIndex(getFile(path), withDescendants);
+            } catch (FileSystemException e) {
+                logger.warn("Unable to index {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Tells if the file or folder is part of the index. By default, all the items of a supported type are indexed.
+     *
+     * @param fileObject the file or folder
+     * @return true if the item and its descendants must be indexed
+     * @throws FileSystemException
+     */
+    protected boolean isIndexed(FileObject fileObject) throws FileSystemException {
+        return getSupportedNodeTypes().contains(getDataType(fileObject));
+    }
+
+    private boolean addToIndex(VFSIndex index, FileObject fileObject) throws FileSystemException {
+        if (!isIndexed(fileObject)) {
+            return false;
+        }
+        String path = getPath(fileObject);
+        FileContent content = fileObject.getContent();
+        long lastModified = content.getLastModifiedTime();
+        index.add(new VFSIndex.Entry(path, getDataType(fileObject), null, lastModified));
+        if (fileObject.getType() == FileType.FILE) {
+            index.add(new VFSIndex.Entry(path + JCR_CONTENT_SUFFIX, Constants.JAHIANT_RESOURCE, getContentType(content), lastModified));
+        }
+        return true;
+    }
+
+    /**
+     * Indexes the children of a folder, sub folders being indexed by parallel tasks.
+     */
+    private class IndexTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient VFSIndex index;
+        private final transient FileObject folder;
+
+        IndexTask(VFSIndex index, FileObject folder) {
+            this.index = index;
+            this.folder = folder;
+        }
+
+        @Override
+        protected void compute() {
+            List<IndexTask> subTasks = new ArrayList<>();
+            try {
+                for (FileObject child : folder.getChildren()) {
+                    if (addToIndex(index, child) && child.getType() == FileType.FOLDER) {
+                        subTasks.add(new IndexTask(index, child));
+                    }
+                }
+            } catch (FileSystemException e) {
+                logger.warn("Unable to index the children of {}", folder.getName(), e);
+            }
+            invokeAll(subTasks);
+        }
+    }
+
+    @Override
+    public List<String> search(ExternalQuery query) throws RepositoryException {
+        return getIndex().search(query);
+    }
+
+    @Override
+    public long count(ExternalQuery query) throws RepositoryException {
+        return getIndex().count(query);
+    }
+
+    private VFSIndex getIndex() throws UnsupportedRepositoryOperationException {
+        VFSIndex currentIndex = index;
+        if (currentIndex == null) {
+            throw new UnsupportedRepositoryOperationException("Index of " + getRoot().getName() + " is not available");
+        }
+        return currentIndex;
+    }
+
+    @Override
+    public void removeItemByPath(String path) throws RepositoryException {
+        super.removeItemByPath(path);
+        VFSIndex currentIndex = index;
+        if (currentIndex != null) {
+            currentIndex.remove(path);
+        }
+    }
+
+    @Override
+    public void saveItem(ExternalData data) throws RepositoryException {
+        super.saveItem(data);
+        ExtendedNodeType nodeType = NodeTypeRegistry.getInstance().getNodeType(data.getType());
+        // only the saved entry changes, renamed or moved folders are indexed again with their descendants by move()
+        if (nodeType.isNodeType(Constants.NT_RESOURCE) && StringUtils.contains(data.getPath(), Constants.JCR_CONTENT)) {
+            updateIndex(StringUtils.substringBeforeLast(data.getPath(), JCR_CONTENT_SUFFIX), false);
+        } else if (nodeType.isNodeType(Constants.JAHIANT_FOLDER)) {
+            updateIndex(data.getPath(), false);
+        }
+    }
+
+    @Override
+    public void move(String oldPath, String newPath) throws RepositoryException {
+        super.move(oldPath, newPath);
+        VFSIndex currentIndex = index;
+        if (currentIndex != null && !oldPath.equals(newPath)) {
+            currentIndex.remove(oldPath);
+            updateIndex(newPath, true);
+        }
+    }
+}
@@ -43,20 +43,36 @@
  */
 package org.jahia.modules.external.vfs;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 import javax.jcr.Binary;
 import javax.jcr.RepositoryException;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.Capability;
 import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.util.RandomAccessMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * JCR {@link Binary} implementation which has VFS' {@link FileContent} as an underlying source.
+ * Nothing is read until the binary is used : each {@link #getStream()} opens a new stream on the file, and
+ * {@link #read(byte[], long)} only reads the requested range, through a {@link FileChannel} when the file is on the local
+ * file system, or through the VFS random access content when the file system supports it. {@link #transferTo(WritableByteChannel)}
+ * copies a local file without going through the heap.
  * 
  * @author Sergiy Shyrkov
  */
@@ -66,6 +82,12 @@ public class VFSBinaryImpl implements Binary {
 
     private FileContent fileContent;
 
+    private long size = -1;
+
+    private File localFile;
+
+    private boolean localFileResolved;
+
     /**
      * Initializes an instance of this class with the provided VFS file.
      * 
@@ -88,33 +110,164 @@ public class VFSBinaryImpl implements Binary {
 
     @Override
     public long getSize() throws RepositoryException {
-        try {
-            return fileContent.getSize();
-        } catch (FileSystemException e) {
-            throw new RepositoryException(e);
+        if (size < 0) {
+            try {
+                size = fileContent.getSize();
+            } catch (FileSystemException e) {
+                throw new RepositoryException(e);
+            }
         }
+        return size;
     }
 
     @Override
     public InputStream getStream() throws RepositoryException {
         try {
+            File file = getLocalFile();
+            if (file != null) {
+                return Files.newInputStream(file.toPath());
+            }
             return fileContent.getInputStream();
-        } catch (FileSystemException e) {
+        } catch (IOException e) {
             throw new RepositoryException(e);
         }
     }
 
     @Override
     public int read(byte[] b, long position) throws IOException, RepositoryException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position " + position);
+        }
+        if (b.length == 0) {
+            return 0;
+        }
+        File file = getLocalFile();
+        if (file != null) {
+            return readLocalFile(file, b, position);
+        }
+        if (fileContent.getFile().getFileSystem().hasCapability(Capability.RANDOM_ACCESS_READ)) {
+            return readRandomAccessContent(b, position);
+        }
         InputStream is = null;
-        int read = 0;
         try {
             is = getStream();
-            read = is.read(b, (int) position, b.length);
+            long skipped = is.skip(position);
+            while (skipped < position) {
+                long n = is.skip(position - skipped);
+                if (n <= 0) {
+                    if (is.read() < 0) {
+                        return -1;
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+            return readFully(is, b);
         } finally {
             IOUtils.closeQuietly(is);
         }
-        return read;
+    }
+
+    /**
+     * Copies the whole content to the specified channel. When the file is on the local file system, the bytes are
+     * transferred with {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so that the operating system can
+     * copy them directly when the target is a file or a socket.
+     *
+     * @param target the channel to write to
+     * @return the number of bytes copied
+     */
+    public long transferTo(WritableByteChannel target) throws IOException, RepositoryException {
+        File file = getLocalFile();
+        if (file == null) {
+            InputStream is = getStream();
+            try {
+                return IOUtils.copyLarge(is, Channels.newOutputStream(target));
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long n = channel.transferTo(position, size - position, target);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+            return position;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int readLocalFile(File file, byte[] b, long position) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(b);
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, position + buffer.position());
+                if (n < 0) {
+                    break;
+                }
+            }
+            return buffer.position() > 0 ? buffer.position() : -1;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int readRandomAccessContent(byte[] b, long position) throws IOException {
+        RandomAccessContent content = fileContent.getRandomAccessContent(RandomAccessMode.READ);
+        try {
+            if (position >= content.length()) {
+                return -1;
+            }
+            content.seek(position);
+            return readFully(content.getInputStream(), b);
+        } finally {
+            content.close();
+        }
+    }
+
+    private static int readFully(InputStream is, byte[] b) throws IOException {
+        int read = 0;
+        while (read < b.length) {
+            int n = is.read(b, read, b.length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read > 0 ? read : -1;
+    }
+
+    /**
+     * Returns the underlying file if it is on the local file system, so that it can be read without going through VFS.
+     */
+    private File getLocalFile() {
+        if (!localFileResolved) {
+            localFileResolved = true;
+            localFile = getLocalFile(fileContent.getFile());
+        }
+        return localFile;
+    }
+
+    /**
+     * @return the file if it is on the local file system, <code>null</code> otherwise
+     */
+    static File getLocalFile(FileObject file) {
+        if ("file".equals(file.getName().getScheme())) {
+            try {
+                // the local file system returns the file itself, without copying it
+                return file.getFileSystem().replicateFile(file, Selectors.SELECT_SELF);
+            } catch (FileSystemException e) {
+                logger.debug("Cannot get local file for " + file.getName(), e);
+            }
+        }
+        return null;
     }
 
     @Override
@@ -61,9 +61,12 @@ import javax.jcr.ItemNotFoundException;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 import javax.jcr.nodetype.NoSuchNodeTypeException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
@@ -263,6 +266,37 @@ public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Wri
         }
     }
 
+    /**
+     * Copies the binaries with {@link VFSBinaryImpl#transferTo(java.nio.channels.WritableByteChannel)} when both the
+     * target and the binaries are local files, so that the content is not copied through the heap.
+     *
+     * @return <code>false</code> if the binaries have to be copied with streams
+     */
+    private boolean transferLocalBinaries(FileObject file, Binary[] binaries) throws IOException, RepositoryException {
+        for (Binary binary : binaries) {
+            if (!(binary instanceof VFSBinaryImpl)) {
+                return false;
+            }
+        }
+        File localFile = VFSBinaryImpl.getLocalFile(file);
+        if (localFile == null) {
+            return false;
+        }
+        if (!file.exists()) {
+            file.createFile();
+        }
+        FileChannel channel = FileChannel.open(localFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            for (Binary binary : binaries) {
+                ((VFSBinaryImpl) binary).transferTo(channel);
+            }
+        } finally {
+            channel.close();
+        }
+        file.refresh();
+        return true;
+    }
+
     public void saveItem(ExternalData data) throws RepositoryException {
         try {
             ExtendedNodeType nodeType = NodeTypeRegistry.getInstance().getNodeType(data.getType());
@@ -271,7 +305,11 @@ public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Wri
                 try {
                     final Binary[] binaries = data.getBinaryProperties().get(Constants.JCR_DATA);
                     if (binaries.length > 0) {
-                        outputStream = getFile(data.getPath().substring(0, data.getPath().indexOf(JCR_CONTENT_SUFFIX))).getContent().getOutputStream();
+                        FileObject file = getFile(data.getPath().substring(0, data.getPath().indexOf(JCR_CONTENT_SUFFIX)));
+                        if (transferLocalBinaries(file, binaries)) {
+                            return;
+                        }
+                        outputStream = file.getContent().getOutputStream();
                         for (Binary binary : binaries) {
                             InputStream stream = null;
                             try {
@@ -344,15 +382,26 @@ public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Wri
 
         }
 
+        String path = getPath(fileObject);
+
+        ExternalData result = new ExternalData(path, path, type, properties);
+        result.setMixin(addedMixins);
+        return result;
+    }
+
+    /**
+     * Returns the JCR path of a file or folder, relative to the root of the data source.
+     *
+     * @param fileObject the file or folder
+     * @return the escaped path, starting with a slash
+     */
+    protected String getPath(FileObject fileObject) {
         String path = fileObject.getName().getPath().substring(rootPath.length());
         path = Escaping.escapeIllegalJcrChars(path);
         if (!path.startsWith("/")) {
             path = "/" + path;
         }
-
-        ExternalData result = new ExternalData(path, path, type, properties);
-        result.setMixin(addedMixins);
-        return result;
+        return path;
     }
 
     public String getDataType(FileObject fileObject) throws FileSystemException {
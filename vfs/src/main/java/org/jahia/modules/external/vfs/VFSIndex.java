@@ -0,0 +1,363 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.vfs;
+
+import org.apache.commons.lang.StringUtils;
+import org.jahia.api.Constants;
+import org.jahia.modules.external.ExternalQuery;
+import org.jahia.modules.external.query.QueryHelper;
+import org.jahia.services.content.nodetypes.NodeTypeRegistry;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.Value;
+import javax.jcr.ValueFormatException;
+import javax.jcr.nodetype.NoSuchNodeTypeException;
+import javax.jcr.query.qom.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of the files and folders of an {@link IndexedVFSDataSource}, used to answer queries without reading the
+ * file system. Entries are sorted by path, so that descendant and child node constraints are resolved as a range of
+ * entries.
+ */
+class VFSIndex {
+
+    /**
+     * Indexed information of a file, folder or file content node.
+     */
+    static class Entry {
+        private final String path;
+        private final String name;
+        private final String nodeType;
+        private final String mimeType;
+        private final long lastModified;
+
+        Entry(String path, String nodeType, String mimeType, long lastModified) {
+            this.path = path;
+            this.name = StringUtils.substringAfterLast(path, "/");
+            this.nodeType = nodeType;
+            this.mimeType = mimeType;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + nodeType + ")";
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+    void add(Entry entry) {
+        entries.put(entry.path, entry);
+    }
+
+    /**
+     * Removes the entry at the specified path and all its descendants.
+     */
+    void remove(String path) {
+        entries.remove(path);
+        getDescendants(path).clear();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the paths of the entries matching the query, in path order, taking the query offset and limit into account.
+     *
+     * @throws UnsupportedRepositoryOperationException if the query contains a constraint or an ordering which cannot be
+     *                                                 answered by the index
+     */
+    List<String> search(ExternalQuery query) throws RepositoryException {
+        if (query.getOrderings() != null && query.getOrderings().length > 0) {
+            throw new UnsupportedRepositoryOperationException("Orderings are not supported by the index");
+        }
+        Filter filter = new Filter(query);
+        List<String> results = new ArrayList<>();
+        long toSkip = query.getOffset();
+        for (Entry entry : getCandidates(filter)) {
+            if (query.getLimit() > -1 && results.size() >= query.getLimit()) {
+                break;
+            }
+            if (filter.test(entry)) {
+                if (toSkip > 0) {
+                    toSkip--;
+                } else {
+                    results.add(entry.path);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Counts the entries matching the query.
+     *
+     * @throws UnsupportedRepositoryOperationException if the query contains a constraint which cannot be answered by the index
+     */
+    long count(ExternalQuery query) throws RepositoryException {
+        Filter filter = new Filter(query);
+        long count = 0;
+        for (Entry entry : getCandidates(filter)) {
+            if (filter.test(entry)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Collection<Entry> getCandidates(Filter filter) {
+        return filter.rootPath != null ? getDescendants(filter.rootPath).values() : entries.values();
+    }
+
+    private ConcurrentNavigableMap<String, Entry> getDescendants(String path) {
+        String prefix = path.endsWith("/") ? path : path + "/";
+        // '0' is the character following '/'
+        return entries.subMap(prefix, true, prefix.substring(0, prefix.length() - 1) + "0", false);
+    }
+
+    /**
+     * Conditions of a query, built from its source and constraints.
+     */
+    private static class Filter implements Predicate<Entry> {
+        private final String nodeType;
+        private final Map<String, Boolean> matchingNodeTypes = new HashMap<>();
+        private final List<Predicate<Entry>> conditions = new ArrayList<>();
+        private String rootPath;
+        private boolean includeDescendants;
+
+        Filter(ExternalQuery query) throws RepositoryException {
+            nodeType = QueryHelper.getNodeType(query.getSource());
+            addConstraint(query.getConstraint());
+        }
+
+        @Override
+        public boolean test(Entry entry) {
+            if (rootPath != null && !includeDescendants && entry.path.indexOf('/', rootPath.length() + 1) > -1) {
+                return false;
+            }
+            if (!isNodeType(entry.nodeType)) {
+                return false;
+            }
+            for (Predicate<Entry> condition : conditions) {
+                if (!condition.test(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isNodeType(String entryNodeType) {
+            Boolean matching = matchingNodeTypes.get(entryNodeType);
+            if (matching == null) {
+                try {
+                    matching = entryNodeType.equals(nodeType) || NodeTypeRegistry.getInstance().getNodeType(entryNodeType).isNodeType(nodeType);
+                } catch (NoSuchNodeTypeException e) {
+                    matching = false;
+                }
+                matchingNodeTypes.put(entryNodeType, matching);
+            }
+            return matching;
+        }
+
+        private void addConstraint(Constraint constraint) throws RepositoryException {
+            if (constraint == null || isLanguageConstraint(constraint)) {
+                // the index is not language specific, files and folders are returned for all languages
+                return;
+            }
+            if (constraint instanceof And) {
+                addConstraint(((And) constraint).getConstraint1());
+                addConstraint(((And) constraint).getConstraint2());
+            } else if (constraint instanceof DescendantNode) {
+                setRootPath(((DescendantNode) constraint).getAncestorPath(), true);
+            } else if (constraint instanceof ChildNode) {
+                setRootPath(((ChildNode) constraint).getParentPath(), false);
+            } else if (constraint instanceof Comparison) {
+                addComparison((Comparison) constraint);
+            } else if (constraint instanceof Not) {
+                throw new UnsupportedRepositoryOperationException("Negated constraints are not supported : " + constraint.toString());
+            } else if (constraint instanceof Or) {
+                throw new UnsupportedRepositoryOperationException("Disjunctions are not supported : " + constraint.toString());
+            } else {
+                throw new UnsupportedRepositoryOperationException("Unsupported constraint : " + constraint.toString());
+            }
+        }
+
+        /**
+         * Tells if the constraint only filters on the language, like the <code>jcr:language</code> comparisons and the
+         * <code>jcr:language is null or jcr:language = '...'</code> disjunctions added to the queries.
+         */
+        private static boolean isLanguageConstraint(Constraint constraint) {
+            if (constraint instanceof Or) {
+                return isLanguageConstraint(((Or) constraint).getConstraint1()) && isLanguageConstraint(((Or) constraint).getConstraint2());
+            } else if (constraint instanceof Not) {
+                Constraint negated = ((Not) constraint).getConstraint();
+                return negated instanceof PropertyExistence && Constants.JCR_LANGUAGE.equals(((PropertyExistence) negated).getPropertyName());
+            } else if (constraint instanceof PropertyExistence) {
+                return Constants.JCR_LANGUAGE.equals(((PropertyExistence) constraint).getPropertyName());
+            } else if (constraint instanceof Comparison) {
+                DynamicOperand operand = ((Comparison) constraint).getOperand1();
+                return operand instanceof PropertyValue && Constants.JCR_LANGUAGE.equals(((PropertyValue) operand).getPropertyName());
+            }
+            return false;
+        }
+
+        private void setRootPath(String path, boolean includeDescendants) throws UnsupportedRepositoryOperationException {
+            if (rootPath != null) {
+                throw new UnsupportedRepositoryOperationException("Only one path constraint is supported");
+            }
+            this.rootPath = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+            this.includeDescendants = includeDescendants;
+        }
+
+        private void addComparison(Comparison comparison) throws RepositoryException {
+            if (!(comparison.getOperand2() instanceof Literal)) {
+                throw new UnsupportedRepositoryOperationException("Unsupported constraint : " + comparison.toString());
+            }
+            DynamicOperand operand = comparison.getOperand1();
+            String operator = comparison.getOperator();
+            Value value = ((Literal) comparison.getOperand2()).getLiteralValue();
+            if (operand instanceof PropertyValue) {
+                String propertyName = ((PropertyValue) operand).getPropertyName();
+                if (Constants.JCR_LASTMODIFIED.equals(propertyName) || Constants.JCR_CREATED.equals(propertyName)) {
+                    final long time;
+                    try {
+                        time = value.getDate().getTimeInMillis();
+                    } catch (ValueFormatException e) {
+                        throw new UnsupportedRepositoryOperationException("Unsupported constraint : " + comparison.toString(), e);
+                    }
+                    final String dateOperator = operator;
+                    conditions.add(entry -> entry.lastModified > 0 && compare(Long.compare(entry.lastModified, time), dateOperator));
+                    return;
+                }
+            }
+            Function<Entry, String> getter = getStringOperand(operand);
+            if (getter == null) {
+                throw new UnsupportedRepositoryOperationException("Unsupported constraint : " + comparison.toString());
+            }
+            final String expected = value.getString();
+            if (QueryObjectModelConstants.JCR_OPERATOR_LIKE.equals(operator)) {
+                final Pattern pattern = getLikePattern(expected);
+                conditions.add(entry -> {
+                    String s = getter.apply(entry);
+                    return s != null && pattern.matcher(s).matches();
+                });
+            } else {
+                final String stringOperator = operator;
+                conditions.add(entry -> {
+                    String s = getter.apply(entry);
+                    return s != null && compare(s.compareTo(expected), stringOperator);
+                });
+            }
+        }
+
+        private Function<Entry, String> getStringOperand(DynamicOperand operand) {
+            if (operand instanceof NodeName) {
+                return entry -> entry.name;
+            } else if (operand instanceof NodeLocalName) {
+                return entry -> StringUtils.substringAfter(entry.name, ":").isEmpty() ? entry.name : StringUtils.substringAfter(entry.name, ":");
+            } else if (operand instanceof PropertyValue && Constants.JCR_MIMETYPE.equals(((PropertyValue) operand).getPropertyName())) {
+                return entry -> entry.mimeType;
+            } else if (operand instanceof LowerCase) {
+                final Function<Entry, String> getter = getStringOperand(((LowerCase) operand).getOperand());
+                return getter != null ? entry -> StringUtils.lowerCase(getter.apply(entry)) : null;
+            } else if (operand instanceof UpperCase) {
+                final Function<Entry, String> getter = getStringOperand(((UpperCase) operand).getOperand());
+                return getter != null ? entry -> StringUtils.upperCase(getter.apply(entry)) : null;
+            }
+            return null;
+        }
+
+        private static boolean compare(int comparison, String operator) {
+            switch (operator) {
+                case QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO:
+                    return comparison == 0;
+                case QueryObjectModelConstants.JCR_OPERATOR_NOT_EQUAL_TO:
+                    return comparison != 0;
+                case QueryObjectModelConstants.JCR_OPERATOR_GREATER_THAN:
+                    return comparison > 0;
+                case QueryObjectModelConstants.JCR_OPERATOR_GREATER_THAN_OR_EQUAL_TO:
+                    return comparison >= 0;
+                case QueryObjectModelConstants.JCR_OPERATOR_LESS_THAN:
+                    return comparison < 0;
+                case QueryObjectModelConstants.JCR_OPERATOR_LESS_THAN_OR_EQUAL_TO:
+                    return comparison <= 0;
+                default:
+                    return false;
+            }
+        }
+
+        private static Pattern getLikePattern(String like) {
+            StringBuilder regex = new StringBuilder();
+            boolean escaped = false;
+            for (char c : like.toCharArray()) {
+                if (escaped) {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '%') {
+                    regex.append(".*");
+                } else if (c == '_') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+    }
+}
@@ -77,7 +77,8 @@ public class VFSProviderFactory implements ProviderFactory {
         provider.setKey(mountPoint.getIdentifier());
         provider.setMountPoint(mountPoint.getPath());
 
-        VFSDataSource dataSource = new VFSDataSource();
+        boolean indexed = mountPoint.hasProperty("j:indexed") && mountPoint.getProperty("j:indexed").getBoolean();
+        VFSDataSource dataSource = indexed ? new IndexedVFSDataSource() : new VFSDataSource();
         dataSource.setRoot(mountPoint.getProperty("j:rootPath").getString());
         provider.setDataSource(dataSource);
         provider.setDynamicallyMounted(true);
@@ -64,6 +64,7 @@ public class VFSMountPointFactory extends AbstractMountPointFactory implements S
     private String localPath;
     @NotEmpty
     private String root;
+    private boolean indexed;
 
     public VFSMountPointFactory() {
     }
@@ -80,6 +81,14 @@ public class VFSMountPointFactory extends AbstractMountPointFactory implements S
         this.root = root;
     }
 
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
     @Override
     public void populate(JCRNodeWrapper nodeWrapper) throws RepositoryException {
         super.populate(nodeWrapper);
@@ -90,6 +99,7 @@ public class VFSMountPointFactory extends AbstractMountPointFactory implements S
             // no local path defined for this mount point
         }
         this.root = nodeWrapper.getPropertyAsString("j:rootPath");
+        this.indexed = nodeWrapper.hasProperty("j:indexed") && nodeWrapper.getProperty("j:indexed").getBoolean();
     }
 
     @Override
@@ -110,6 +120,7 @@ public class VFSMountPointFactory extends AbstractMountPointFactory implements S
     @Override
     public void setProperties(JCRNodeWrapper mountNode) throws RepositoryException {
         mountNode.setProperty("j:rootPath", root);
+        mountNode.setProperty("j:indexed", indexed);
     }
 
     public void setLocalPath(String localPath) {
@@ -39,6 +39,11 @@
                         <form:label path="root"><fmt:message key="vfsFactory.root"/> <span style="color: red">*</span></form:label>
                         <form:input path="root"/>
                     </div>
+                    <div class="row-fluid">
+                        <form:label path="indexed" cssClass="checkbox">
+                            <form:checkbox path="indexed"/> <fmt:message key="vfsFactory.indexed"/>
+                        </form:label>
+                    </div>
                     <div class="row-fluid">
                         <jsp:include page="/modules/external-provider/angular/folderPicker.jsp"/>
                     </div>
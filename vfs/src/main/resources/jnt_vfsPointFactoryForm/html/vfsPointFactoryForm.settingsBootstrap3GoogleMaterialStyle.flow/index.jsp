@@ -47,6 +47,13 @@
                                 <form:label path="root" cssClass="control-label"><fmt:message key="vfsFactory.root"/> <span style="color: red">*</span></form:label>
                                 <form:input path="root" cssClass="form-control"/>
                             </div>
+                            <div class="form-group">
+                                <div class="checkbox">
+                                    <label>
+                                        <form:checkbox path="indexed"/> <fmt:message key="vfsFactory.indexed"/>
+                                    </label>
+                                </div>
+                            </div>
                             <div class="form-group">
                                 <jsp:include page="/modules/external-provider/angular/folderPicker.settingsBootstrap3GoogleMaterialStyle.jsp"/>
                             </div>